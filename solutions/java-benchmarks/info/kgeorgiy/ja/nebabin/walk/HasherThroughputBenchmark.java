@@ -0,0 +1,55 @@
+package info.kgeorgiy.ja.nebabin.walk;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of file hashers fed with direct buffers of different sizes, as {@link AbstractFileHasher} reads files.
+ * Every invocation hashes {@value #TOTAL} bytes and takes the digest, so the score is in bytes per nanosecond, i.e. GB/s.
+ *
+ * @author Nebabin Nikita
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HasherThroughputBenchmark {
+    private static final int TOTAL = 1 << 22;
+
+    @Param({"jenkins", "sha-1"})
+    private String mode;
+
+    @Param({"64", "4096", "65536", "1048576"})
+    private int bufferSize;
+
+    private ByteBuffer data;
+    private AbstractFileHasher hasher;
+    private byte[] digest;
+
+    @Setup
+    public void setup() throws WalkModeException {
+        byte[] bytes = new byte[TOTAL];
+        new Random(42).nextBytes(bytes);
+        data = ByteBuffer.allocateDirect(TOTAL).put(bytes).flip();
+        hasher = HasherRegistry.getFactory(mode).apply(new HashWriter(OutputStream.nullOutputStream()));
+        digest = new byte[hasher.digestLength()];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOTAL)
+    public byte[] hash() {
+        // Window of the same buffer is moved, as the hasher reuses its read buffer, so nothing is allocated per update
+        data.clear();
+        for (int pos = 0; pos < TOTAL; pos += bufferSize) {
+            hasher.update(data.limit(pos + bufferSize).position(pos));
+        }
+        hasher.digest(digest, 0);
+        return digest;
+    }
+}
@@ -0,0 +1,116 @@
+package info.kgeorgiy.ja.nebabin.walk;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end {@link Walk} and {@link RecursiveWalk} over synthetic trees in a temporary directory.
+ * {@code Walk} gets the list of all files, {@code RecursiveWalk} gets the root of the tree.
+ * <ul>
+ *     <li>{@code tiny}: 10000 files of up to 256 bytes in 100 directories;</li>
+ *     <li>{@code huge}: 4 files of 32 MiB;</li>
+ *     <li>{@code deep}: chain of 200 nested directories with 10 files of 4 KiB each;</li>
+ *     <li>{@code wide}: 5000 files of 4 KiB in one directory.</li>
+ * </ul>
+ * The score is the time of one walk in milliseconds.
+ *
+ * @author Nebabin Nikita
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WalkBenchmark {
+    @Param({"tiny", "huge", "deep", "wide"})
+    private String tree;
+
+    @Param({"Walk", "RecursiveWalk"})
+    private String walker;
+
+    @Param({"jenkins", "sha-1"})
+    private String mode;
+
+    private Path root;
+    private String input;
+    private AbstractWalk walk;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        root = Files.createTempDirectory("walk-bench");
+        Random random = new Random(42);
+        List<Path> files = new ArrayList<>();
+        switch (tree) {
+            case "tiny" -> {
+                for (int i = 0; i < 10000; ++i) {
+                    files.add(create(root.resolve("d" + i % 100).resolve("f" + i), random.nextInt(257), random));
+                }
+            }
+            case "huge" -> {
+                for (int i = 0; i < 4; ++i) {
+                    files.add(create(root.resolve("f" + i), 32 << 20, random));
+                }
+            }
+            case "deep" -> {
+                Path dir = root;
+                for (int i = 0; i < 200; ++i) {
+                    dir = dir.resolve("d" + i);
+                    for (int j = 0; j < 10; ++j) {
+                        files.add(create(dir.resolve("f" + j), 4096, random));
+                    }
+                }
+            }
+            case "wide" -> {
+                for (int i = 0; i < 5000; ++i) {
+                    files.add(create(root.resolve("f" + i), 4096, random));
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown tree '" + tree + "'");
+        }
+        if (walker.equals("Walk")) {
+            StringBuilder list = new StringBuilder();
+            for (Path file : files) {
+                list.append(file).append('\n');
+            }
+            input = list.toString();
+            walk = new Walk();
+        } else {
+            input = root.toString();
+            walk = new RecursiveWalk();
+        }
+    }
+
+    private static Path create(Path file, int size, Random random) throws IOException {
+        Files.createDirectories(file.getParent());
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        return Files.write(file, bytes);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public void walk() throws WalkException {
+        walk.walk(new BufferedReader(new StringReader(input)), new HashWriter(OutputStream.nullOutputStream()), mode);
+    }
+}
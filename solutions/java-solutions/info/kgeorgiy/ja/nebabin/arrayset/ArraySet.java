@@ -2,16 +2,29 @@ package info.kgeorgiy.ja.nebabin.arrayset;
 
 import java.util.*;
 
-public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E>, List<E> {
-    protected final List<E> elems;
-    protected final Comparator<? super E> comp;
+/**
+ * Immutable navigable set over a sorted array. Views ({@link #subSet}, {@link #headSet}, {@link #tailSet},
+ * {@link #subList}, {@link #reversed}) of any depth are ranges {@code [from, to)} of the same array
+ * with a direction, so they take constant time to create, {@link #get} reads the array directly
+ * and searches compare elements by the comparator of the array, not by a reversing wrapper.
+ *
+ * @author Nebabin Nikita
+ */
+public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E>, List<E>, RandomAccess {
+    private final E[] base;
+    private final int from;
+    private final int to;
+    private final boolean descending;
+    private final Comparator<? super E> comp;
+    private final BTreeIndex<E> index;
 
     public ArraySet() {
         this((Comparator<E>) null);
     }
 
+    @SuppressWarnings("unchecked")
     public ArraySet(Comparator<? super E> comp) {
-        this(Collections.emptyList(), comp);
+        this((E[]) new Object[0], comp, false);
     }
 
     public ArraySet(Collection<? extends E> col) {
@@ -19,16 +32,77 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E>, List
     }
 
     public ArraySet(Collection<? extends E> col, Comparator<? super E> comp) {
-        this(Collections.unmodifiableList(new ArrayList<>(createTreeSet(col, comp))), comp);
+        this(sortedDistinct(col, comp, false), comp, true);
     }
 
+    @SuppressWarnings("unchecked")
     public ArraySet(SortedSet<E> set) {
-        this(Collections.unmodifiableList(new ArrayList<>(set)), set.comparator());
+        this((E[]) set.toArray(), set.comparator(), true);
+    }
+
+    /**
+     * Creates set of elements of {@code col}, which should be already sorted by {@code comp},
+     * in a single linear pass. Of equal elements the first one is kept.
+     *
+     * @throws IllegalArgumentException if {@code col} is not sorted
+     */
+    public static <E> ArraySet<E> ofSorted(Collection<? extends E> col, Comparator<? super E> comp) {
+        return new ArraySet<>(sortedDistinct(col, comp, true), comp, true);
+    }
+
+    static <E> ArraySet<E> ofSortedArray(E[] elems, Comparator<? super E> comp) {
+        return new ArraySet<>(elems, comp, true);
+    }
+
+    private ArraySet(E[] base, Comparator<? super E> comp, boolean indexed) {
+        this(base, 0, base.length, false, comp, indexed ? BTreeIndex.of(Arrays.asList(base), comp) : null);
     }
 
-    private ArraySet(List<E> elems, Comparator<? super E> comp) {
-        this.elems = elems;
+    private ArraySet(E[] base, int from, int to, boolean descending, Comparator<? super E> comp, BTreeIndex<E> index) {
+        this.base = base;
+        this.from = from;
+        this.to = to;
+        this.descending = descending;
         this.comp = comp;
+        this.index = index;
+    }
+
+    /**
+     * Same as {@link Collections#binarySearch(List, Object, Comparator)} over this set in its order.
+     */
+    int search(E key) {
+        int binRes = index == null ? Arrays.binarySearch(base, from, to, key, comp) : inRange(index.search(key));
+        int ind = binRes >= 0 ? binRes : -(binRes + 1);
+        if (descending) {
+            return binRes >= 0 ? to - 1 - ind : -(to - ind + 1);
+        }
+        return binRes >= 0 ? ind - from : -(ind - from + 1);
+    }
+
+    /**
+     * Restricts result of a search over the whole array to {@code [from, to)}.
+     */
+    private int inRange(int binRes) {
+        int ind = binRes >= 0 ? binRes : -(binRes + 1);
+        if (binRes >= 0 && from <= ind && ind < to) {
+            return binRes;
+        }
+        return -(Math.clamp(ind, from, to) + 1);
+    }
+
+    private ArraySet<E> view(int fromInd, int toInd) {
+        return descending
+                ? new ArraySet<>(base, to - toInd, to - fromInd, true, comp, index)
+                : new ArraySet<>(base, from + fromInd, from + toInd, false, comp, index);
+    }
+
+    private int pos(int ind) {
+        return descending ? to - 1 - ind : from + ind;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E a, E b) {
+        return comp == null ? ((Comparable<? super E>) a).compareTo(b) : comp.compare(a, b);
     }
 
     private int lowerBound(E key, boolean inclusive) {
@@ -36,7 +110,7 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E>, List
     }
 
     private int upperBound(E key, boolean inclusive) {
-        int binRes = Collections.binarySearch(elems, key, comp);
+        int binRes = search(key);
         if (binRes >= 0 && !inclusive) {
             ++binRes;
         }
@@ -44,7 +118,119 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E>, List
     }
 
     private E getCheckedElem(int ind) {
-        return 0 <= ind && ind < size() ? elems.get(ind) : null;
+        return 0 <= ind && ind < size() ? base[pos(ind)] : null;
+    }
+
+    /**
+     * Returns set of elements, which are in this set or in {@code other}, in time linear in the result size.
+     * Of equal elements the one of this set is kept.
+     *
+     * @throws IllegalArgumentException if the sets are ordered by different comparators
+     */
+    public ArraySet<E> union(ArraySet<E> other) {
+        return merged(other, true, true, true);
+    }
+
+    /**
+     * Returns set of elements of this set, which are in {@code other}, merging the sets in one pass
+     * or, if their sizes differ a lot, galloping the smaller one over the larger one.
+     *
+     * @throws IllegalArgumentException if the sets are ordered by different comparators
+     */
+    public ArraySet<E> intersection(ArraySet<E> other) {
+        return merged(other, false, true, false);
+    }
+
+    /**
+     * Returns set of elements of this set, which are not in {@code other}, same way as {@link #intersection}.
+     *
+     * @throws IllegalArgumentException if the sets are ordered by different comparators
+     */
+    public ArraySet<E> difference(ArraySet<E> other) {
+        return merged(other, true, false, false);
+    }
+
+    private ArraySet<E> merged(ArraySet<E> other, boolean onlyThis, boolean both, boolean onlyOther) {
+        Comparator<? super E> order = comparator();
+        if (!Objects.equals(order, other.comparator())) {
+            throw new IllegalArgumentException("Sets are ordered by different comparators");
+        }
+        return ofSortedArray(SortedMerge.merge(this, other, order, onlyThis, both, onlyOther), order);
+    }
+
+    /**
+     * Writes to {@code result} index of every probe in this set or {@code -1}, as {@link #indexOf} does.
+     * Probes should be sorted in order of this set, every probe is searched from the place of the previous one,
+     * so the cost is {@code O(m log(n / m))} comparisons, which is at most {@code O(n + m)}.
+     *
+     * @throws IllegalArgumentException if probes are not sorted
+     * @throws IndexOutOfBoundsException if {@code result} is shorter than {@code probes}
+     */
+    public void indicesOf(List<? extends E> probes, int[] result) {
+        searchAll(probes, result);
+        for (int i = 0; i < probes.size(); ++i) {
+            result[i] = Math.max(result[i], -1);
+        }
+    }
+
+    /**
+     * Writes to {@code result} index of {@link #floor} of every probe or {@code -1}, same way as {@link #indicesOf}.
+     */
+    public void floorIndices(List<? extends E> probes, int[] result) {
+        boundIndices(probes, result, false, true);
+    }
+
+    /**
+     * Writes to {@code result} index of {@link #lower} of every probe or {@code -1}, same way as {@link #indicesOf}.
+     */
+    public void lowerIndices(List<? extends E> probes, int[] result) {
+        boundIndices(probes, result, false, false);
+    }
+
+    /**
+     * Writes to {@code result} index of {@link #ceiling} of every probe or {@code -1}, same way as {@link #indicesOf}.
+     */
+    public void ceilingIndices(List<? extends E> probes, int[] result) {
+        boundIndices(probes, result, true, true);
+    }
+
+    /**
+     * Writes to {@code result} index of {@link #higher} of every probe or {@code -1}, same way as {@link #indicesOf}.
+     */
+    public void higherIndices(List<? extends E> probes, int[] result) {
+        boundIndices(probes, result, true, false);
+    }
+
+    private void boundIndices(List<? extends E> probes, int[] result, boolean upper, boolean inclusive) {
+        searchAll(probes, result);
+        for (int i = 0; i < probes.size(); ++i) {
+            int binRes = result[i];
+            int ind;
+            if (binRes >= 0) {
+                ind = inclusive ? binRes : upper ? binRes + 1 : binRes - 1;
+            } else {
+                ind = upper ? -(binRes + 1) : -(binRes + 1) - 1;
+            }
+            result[i] = ind < size() ? ind : -1;
+        }
+    }
+
+    /**
+     * Writes to {@code result} result of {@link Collections#binarySearch} for every probe.
+     */
+    @SuppressWarnings("unchecked")
+    private void searchAll(List<? extends E> probes, int[] result) {
+        Objects.checkFromIndexSize(0, probes.size(), result.length);
+        Comparator<? super E> order = comparator() == null ? (Comparator<? super E>) Comparator.naturalOrder() : comparator();
+        int pos = 0;
+        for (int i = 0; i < probes.size(); ++i) {
+            E probe = probes.get(i);
+            if (i > 0 && order.compare(probes.get(i - 1), probe) > 0) {
+                throw new IllegalArgumentException("Probes are not sorted");
+            }
+            pos = SortedMerge.gallop(this, pos, probe, order);
+            result[i] = pos < size() && order.compare(get(pos), probe) == 0 ? pos : -(pos + 1);
+        }
     }
 
     @Override
@@ -84,7 +270,7 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E>, List
 
     @Override
     public Iterator<E> iterator() {
-        return elems.iterator();
+        return listIterator();
     }
 
     @Override
@@ -94,7 +280,8 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E>, List
 
     @Override
     public E get(int index) {
-        return elems.get(index);
+        Objects.checkIndex(index, size());
+        return base[pos(index)];
     }
 
     @Override
@@ -115,7 +302,7 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E>, List
     @Override
     @SuppressWarnings("unchecked")
     public int indexOf(Object o) {
-        int binRes = Collections.binarySearch(elems, (E) o, comp);
+        int binRes = search((E) o);
         return binRes >= 0 ? binRes : -1;
     }
 
@@ -126,17 +313,72 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E>, List
 
     @Override
     public ListIterator<E> listIterator() {
-        return elems.listIterator();
+        return listIterator(0);
     }
 
     @Override
     public ListIterator<E> listIterator(int index) {
-        return elems.listIterator(index);
-    }
-
-    @Override
-    public List<E> subList(int fromIndex, int toIndex) {
-        return elems.subList(fromIndex, toIndex);
+        Objects.checkIndex(index, size() + 1);
+        return new ListIterator<>() {
+            private int cursor = index;
+
+            @Override
+            public boolean hasNext() {
+                return cursor < size();
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return base[pos(cursor++)];
+            }
+
+            @Override
+            public boolean hasPrevious() {
+                return cursor > 0;
+            }
+
+            @Override
+            public E previous() {
+                if (!hasPrevious()) {
+                    throw new NoSuchElementException();
+                }
+                return base[pos(--cursor)];
+            }
+
+            @Override
+            public int nextIndex() {
+                return cursor;
+            }
+
+            @Override
+            public int previousIndex() {
+                return cursor - 1;
+            }
+
+            @Override
+            public void remove() {
+                throw getException();
+            }
+
+            @Override
+            public void set(E e) {
+                throw getException();
+            }
+
+            @Override
+            public void add(E e) {
+                throw getException();
+            }
+        };
+    }
+
+    @Override
+    public ArraySet<E> subList(int fromIndex, int toIndex) {
+        Objects.checkFromToIndex(fromIndex, toIndex, size());
+        return view(fromIndex, toIndex);
     }
 
     @Override
@@ -146,39 +388,39 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E>, List
 
     @Override
     public ArraySet<E> reversed() {
-        return new ArraySet<>(elems.reversed(), Collections.reverseOrder(comp));
+        return new ArraySet<>(base, from, to, !descending, comp, index);
     }
 
     @Override
     public Iterator<E> descendingIterator() {
-        return elems.reversed().iterator();
+        return reversed().iterator();
     }
 
     @Override
     public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
-        if (Collections.reverseOrder(comp).compare(fromElement, toElement) < 0) {
+        if ((descending ? compare(toElement, fromElement) : compare(fromElement, toElement)) > 0) {
             throw new IllegalArgumentException("Trying to get subset of invalid range");
         }
         int fromInd = upperBound(fromElement, fromInclusive);
         int toInd = upperBound(toElement, !toInclusive);
-        return new ArraySet<>(elems.subList(Integer.min(fromInd, toInd), toInd), comp);
+        return view(Integer.min(fromInd, toInd), toInd);
     }
 
     @Override
     public NavigableSet<E> headSet(E toElement, boolean inclusive) {
         int toInd = upperBound(toElement, !inclusive);
-        return new ArraySet<>(elems.subList(0, toInd), comp);
+        return view(0, toInd);
     }
 
     @Override
     public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
         int fromInd = upperBound(fromElement, inclusive);
-        return new ArraySet<>(elems.subList(fromInd, size()), comp);
+        return view(fromInd, size());
     }
 
     @Override
     public Comparator<? super E> comparator() {
-        return comp;
+        return descending ? Collections.reverseOrder(comp) : comp;
     }
 
     @Override
@@ -208,7 +450,10 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E>, List
 
     @Override
     public E first() {
-        return elems.getFirst();
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return get(0);
     }
 
     @Override
@@ -218,12 +463,15 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E>, List
 
     @Override
     public E last() {
-        return elems.getLast();
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return get(size() - 1);
     }
 
     @Override
     public Spliterator<E> spliterator() {
-        return elems.spliterator();
+        return List.super.spliterator();
     }
 
     @Override
@@ -243,14 +491,48 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E>, List
 
     @Override
     public int size() {
-        return elems.size();
+        return to - from;
     }
-    private static <E> TreeSet<E> createTreeSet(Collection<? extends E> col, Comparator<? super E> comp) {
-        TreeSet<E> res = new TreeSet<>(comp);
-        res.addAll(col);
+
+    @Override
+    public Object[] toArray() {
+        if (!descending) {
+            return Arrays.copyOfRange(base, from, to, Object[].class);
+        }
+        Object[] res = new Object[size()];
+        for (int i = 0; i < res.length; ++i) {
+            res[i] = base[to - 1 - i];
+        }
         return res;
     }
 
+    @SuppressWarnings("unchecked")
+    private static <E> E[] sortedDistinct(Collection<? extends E> col, Comparator<? super E> comp, boolean requireSorted) {
+        E[] arr = (E[]) col.toArray();
+        Comparator<? super E> order = comp == null ? (Comparator<? super E>) Comparator.naturalOrder() : comp;
+        boolean sorted = true;
+        for (int i = 1; i < arr.length && sorted; ++i) {
+            sorted = order.compare(arr[i - 1], arr[i]) <= 0;
+        }
+        if (!sorted) {
+            if (requireSorted) {
+                throw new IllegalArgumentException("Elements are not sorted");
+            }
+            // Stable, so the first of equal elements stays first as with insertion into a TreeSet
+            Arrays.sort(arr, order);
+        } else if (arr.length == 1) {
+            // Type and null check, which TreeSet does on insertion
+            order.compare(arr[0], arr[0]);
+        }
+        int size = arr.length == 0 ? 0 : 1;
+        for (int i = 1; i < arr.length; ++i) {
+            if (order.compare(arr[size - 1], arr[i]) != 0) {
+                arr[size++] = arr[i];
+            }
+        }
+        return size == arr.length ? arr : Arrays.copyOf(arr, size);
+    }
+
     private static UnsupportedOperationException getException() {
         return new UnsupportedOperationException("Trying to change unmodifiable collection.");
     }
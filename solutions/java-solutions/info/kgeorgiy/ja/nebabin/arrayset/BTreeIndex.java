@@ -0,0 +1,112 @@
+package info.kgeorgiy.ja.nebabin.arrayset;
+
+import java.util.*;
+
+/**
+ * Search index over a sorted random access list, which keeps every {@value #BLOCK}-th element
+ * in an implicit B-tree with {@value #NODE} keys per node. A node takes one cache line of compressed references
+ * and children of node {@code i} are nodes {@code i * (NODE + 1) + 1 ... i * (NODE + 1) + NODE + 1},
+ * so a lookup reads about {@code log17(n / 16)} lines of the index instead of {@code log2(n)} lines of the list.
+ * The search is finished by a binary search inside one block of the list.
+ *
+ * @author Nebabin Nikita
+ */
+final class BTreeIndex<E> {
+    static final int THRESHOLD = 1 << 14;
+    private static final int NODE = 16;
+    private static final int BLOCK = 16;
+
+    private final List<? extends E> elems;
+    private final Comparator<? super E> comp;
+    private final int nodes;
+    private final Object[] keys;
+    private final int[] blocks;
+
+    private BTreeIndex(List<? extends E> elems, Comparator<? super E> comp) {
+        this.elems = elems;
+        this.comp = comp;
+        int samples = (elems.size() + BLOCK - 1) / BLOCK;
+        nodes = (samples + NODE - 1) / NODE;
+        keys = new Object[nodes * NODE];
+        blocks = new int[nodes * NODE];
+        fill(0, 0, samples);
+    }
+
+    /**
+     * Returns index over {@code elems}, or {@code null}, if the list is too small for the index to pay off.
+     */
+    static <E> BTreeIndex<E> of(List<? extends E> elems, Comparator<? super E> comp) {
+        return elems.size() < THRESHOLD ? null : new BTreeIndex<>(elems, comp);
+    }
+
+    /**
+     * Fills subtree of {@code node} in order with samples starting from {@code next}, returns the next sample.
+     * Keys left empty are {@code null} and are greater than any element.
+     */
+    private int fill(int node, int next, int samples) {
+        if (node >= nodes) {
+            return next;
+        }
+        for (int i = 0; i < NODE; ++i) {
+            next = fill(child(node, i), next, samples);
+            if (next < samples) {
+                keys[node * NODE + i] = elems.get(next * BLOCK);
+                blocks[node * NODE + i] = next++;
+            }
+        }
+        return fill(child(node, NODE), next, samples);
+    }
+
+    private static int child(int node, int i) {
+        return node * (NODE + 1) + i + 1;
+    }
+
+    /**
+     * Same as {@link Collections#binarySearch(List, Object, Comparator)} over the indexed list.
+     */
+    @SuppressWarnings("unchecked")
+    int search(E key) {
+        int upper = elems.size();
+        for (int node = 0; node < nodes; ) {
+            int base = node * NODE;
+            int low = 0;
+            int high = NODE;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                Object sample = keys[base + mid];
+                if (sample != null && compare((E) sample, key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            if (low < NODE && keys[base + low] != null) {
+                upper = blocks[base + low] * BLOCK;
+            }
+            node = child(node, low);
+        }
+        // Element at upper is the least sample, which is not less than key, so key is in the block before it
+        if (upper < elems.size() && compare(elems.get(upper), key) == 0) {
+            return upper;
+        }
+        int low = Math.max(upper - BLOCK + 1, 0);
+        int high = upper - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(elems.get(mid), key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E a, E b) {
+        return comp == null ? ((Comparable<? super E>) a).compareTo(b) : comp.compare(a, b);
+    }
+}
@@ -0,0 +1,292 @@
+package info.kgeorgiy.ja.nebabin.arrayset;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Mutable thread-safe sorted set for read-heavy use, which keeps elements in an immutable {@link ArraySet}.
+ * Readers take the current set through a volatile read and never lock. Writers are serialized, copy the array
+ * with their changes and publish the new set, so bulk operations cost one copy for the whole batch.
+ * <p>
+ * Iterators and views ({@link #subSet}, {@link #headSet}, {@link #tailSet}, {@link #descendingSet})
+ * are over the set at the moment of the call and do not see later changes, {@link #snapshot()} returns it explicitly.
+ * Iterator {@code remove} removes the element from this set.
+ *
+ * @author Nebabin Nikita
+ */
+public class ConcurrentArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
+    private final Comparator<? super E> comp;
+    private volatile ArraySet<E> snapshot;
+
+    public ConcurrentArraySet() {
+        this((Comparator<? super E>) null);
+    }
+
+    public ConcurrentArraySet(Comparator<? super E> comp) {
+        this(new ArraySet<>(comp));
+    }
+
+    public ConcurrentArraySet(Collection<? extends E> col) {
+        this(col, null);
+    }
+
+    public ConcurrentArraySet(Collection<? extends E> col, Comparator<? super E> comp) {
+        this(new ArraySet<>(col, comp));
+    }
+
+    public ConcurrentArraySet(SortedSet<E> set) {
+        this(new ArraySet<>(set));
+    }
+
+    private ConcurrentArraySet(ArraySet<E> snapshot) {
+        this.comp = snapshot.comparator();
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Returns immutable set of the current elements.
+     */
+    public ArraySet<E> snapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public int size() {
+        return snapshot.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return snapshot.contains(o);
+    }
+
+    @Override
+    public E lower(E e) {
+        return snapshot.lower(e);
+    }
+
+    @Override
+    public E floor(E e) {
+        return snapshot.floor(e);
+    }
+
+    @Override
+    public E ceiling(E e) {
+        return snapshot.ceiling(e);
+    }
+
+    @Override
+    public E higher(E e) {
+        return snapshot.higher(e);
+    }
+
+    @Override
+    public E first() {
+        return snapshot.first();
+    }
+
+    @Override
+    public E last() {
+        return snapshot.last();
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return comp;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return removing(snapshot.iterator());
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return removing(snapshot.descendingIterator());
+    }
+
+    private Iterator<E> removing(Iterator<E> it) {
+        return new Iterator<>() {
+            private E last;
+            private boolean canRemove = false;
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public E next() {
+                last = it.next();
+                canRemove = true;
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (!canRemove) {
+                    throw new IllegalStateException("There is no element to remove.");
+                }
+                canRemove = false;
+                ConcurrentArraySet.this.remove(last);
+            }
+        };
+    }
+
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return snapshot.descendingSet();
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        return snapshot.subSet(fromElement, fromInclusive, toElement, toInclusive);
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        return snapshot.headSet(toElement, inclusive);
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        return snapshot.tailSet(fromElement, inclusive);
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized boolean add(E e) {
+        ArraySet<E> cur = snapshot;
+        if (cur.isEmpty()) {
+            snapshot = ArraySet.ofSorted(Collections.singletonList(e), comp);
+            return true;
+        }
+        int found = cur.search(e);
+        if (found >= 0) {
+            return false;
+        }
+        int pos = -(found + 1);
+        Object[] old = cur.toArray();
+        E[] next = (E[]) new Object[old.length + 1];
+        System.arraycopy(old, 0, next, 0, pos);
+        next[pos] = e;
+        System.arraycopy(old, pos, next, pos + 1, old.length - pos);
+        snapshot = ArraySet.ofSortedArray(next, comp);
+        return true;
+    }
+
+    /**
+     * Adds all elements of {@code col} with a single copy, merging them with elements of this set.
+     */
+    @Override
+    public synchronized boolean addAll(Collection<? extends E> col) {
+        ArraySet<E> cur = snapshot;
+        E[] next = SortedMerge.merge(cur, new ArraySet<E>(col, comp), comp, true, true, true);
+        if (next.length == cur.size()) {
+            return false;
+        }
+        snapshot = ArraySet.ofSortedArray(next, comp);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean remove(Object o) {
+        int ind = snapshot.indexOf(o);
+        if (ind < 0) {
+            return false;
+        }
+        BitSet removed = new BitSet();
+        removed.set(ind);
+        return removeMarked(removed);
+    }
+
+    @Override
+    public synchronized boolean removeAll(Collection<?> col) {
+        BitSet removed = new BitSet();
+        for (Object o : col) {
+            int ind = snapshot.indexOf(o);
+            if (ind >= 0) {
+                removed.set(ind);
+            }
+        }
+        return removeMarked(removed);
+    }
+
+    @Override
+    public synchronized boolean retainAll(Collection<?> col) {
+        BitSet removed = new BitSet();
+        removed.set(0, size());
+        for (Object o : col) {
+            int ind = snapshot.indexOf(o);
+            if (ind >= 0) {
+                removed.clear(ind);
+            }
+        }
+        return removeMarked(removed);
+    }
+
+    @Override
+    public synchronized boolean removeIf(Predicate<? super E> filter) {
+        ArraySet<E> cur = snapshot;
+        BitSet removed = new BitSet();
+        for (int i = 0; i < cur.size(); ++i) {
+            if (filter.test(cur.get(i))) {
+                removed.set(i);
+            }
+        }
+        return removeMarked(removed);
+    }
+
+    @Override
+    public synchronized void clear() {
+        snapshot = new ArraySet<>(comp);
+    }
+
+    @Override
+    public synchronized E pollFirst() {
+        return isEmpty() ? null : pollAt(0);
+    }
+
+    @Override
+    public synchronized E pollLast() {
+        return isEmpty() ? null : pollAt(size() - 1);
+    }
+
+    private E pollAt(int ind) {
+        E elem = snapshot.get(ind);
+        BitSet removed = new BitSet();
+        removed.set(ind);
+        removeMarked(removed);
+        return elem;
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean removeMarked(BitSet removed) {
+        if (removed.isEmpty()) {
+            return false;
+        }
+        ArraySet<E> cur = snapshot;
+        E[] next = (E[]) new Object[cur.size() - removed.cardinality()];
+        int size = 0;
+        for (int i = removed.nextClearBit(0); i < cur.size(); i = removed.nextClearBit(i + 1)) {
+            next[size++] = cur.get(i);
+        }
+        snapshot = ArraySet.ofSortedArray(next, comp);
+        return true;
+    }
+}
@@ -0,0 +1,123 @@
+package info.kgeorgiy.ja.nebabin.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable navigable set of double values, which are stored unboxed in a sorted array.
+ * Besides {@link NavigableSet} methods, it has primitive ones, which do not box values.
+ * Primitive navigation methods throw {@link NoSuchElementException}, when there is no such element.
+ * Elements are ordered as by {@link Double#compare}, so {@code -0.0} is less than {@code 0.0} and {@code NaN} is the greatest.
+ *
+ * @author Nebabin Nikita
+ */
+public class DoubleArraySet extends PrimitiveArraySet<Double, DoubleArraySet> {
+    private final double[] elems;
+
+    public DoubleArraySet() {
+        this(new double[0], 0, 0, false);
+    }
+
+    public DoubleArraySet(double... elems) {
+        this(sortedDistinct(elems.clone()), false);
+    }
+
+    public DoubleArraySet(Collection<? extends Double> col) {
+        this(sortedDistinct(col.stream().mapToDouble(Double::doubleValue).toArray()), false);
+    }
+
+    private DoubleArraySet(double[] elems, boolean descending) {
+        this(elems, 0, elems.length, descending);
+    }
+
+    private DoubleArraySet(double[] elems, int from, int to, boolean descending) {
+        super(from, to, descending);
+        this.elems = elems;
+    }
+
+    private static double[] sortedDistinct(double[] elems) {
+        Arrays.sort(elems);
+        int size = 0;
+        for (int i = 0; i < elems.length; ++i) {
+            if (size == 0 || Double.compare(elems[size - 1], elems[i]) != 0) {
+                elems[size++] = elems[i];
+            }
+        }
+        return size == elems.length ? elems : Arrays.copyOf(elems, size);
+    }
+
+    @Override
+    protected Double boxed(int pos) {
+        return elems[pos];
+    }
+
+    @Override
+    protected int search(Double key) {
+        return search(key.doubleValue());
+    }
+
+    private int search(double key) {
+        return Arrays.binarySearch(elems, from, to, key);
+    }
+
+    @Override
+    protected DoubleArraySet view(int from, int to, boolean descending) {
+        return new DoubleArraySet(elems, from, to, descending);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Double value && contains(value.doubleValue());
+    }
+
+    public boolean contains(double value) {
+        return search(value) >= 0;
+    }
+
+    public double getDouble(int index) {
+        return elems[pos(index)];
+    }
+
+    public double firstDouble() {
+        return elems[firstPos()];
+    }
+
+    public double lastDouble() {
+        return elems[lastPos()];
+    }
+
+    public double lowerDouble(double value) {
+        return elems[present(lowerPos(search(value), false))];
+    }
+
+    public double floorDouble(double value) {
+        return elems[present(lowerPos(search(value), true))];
+    }
+
+    public double ceilingDouble(double value) {
+        return elems[present(higherPos(search(value), true))];
+    }
+
+    public double higherDouble(double value) {
+        return elems[present(higherPos(search(value), false))];
+    }
+
+    public double[] toDoubleArray() {
+        if (!descending) {
+            return Arrays.copyOfRange(elems, from, to);
+        }
+        double[] res = new double[size()];
+        for (int i = 0; i < res.length; ++i) {
+            res[i] = elems[to - 1 - i];
+        }
+        return res;
+    }
+
+    @Override
+    public int hashCode() {
+        int res = 0;
+        for (int i = from; i < to; ++i) {
+            res += Double.hashCode(elems[i]);
+        }
+        return res;
+    }
+}
@@ -0,0 +1,122 @@
+package info.kgeorgiy.ja.nebabin.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable navigable set of int values, which are stored unboxed in a sorted array.
+ * Besides {@link NavigableSet} methods, it has primitive ones, which do not box values.
+ * Primitive navigation methods throw {@link NoSuchElementException}, when there is no such element.
+ *
+ * @author Nebabin Nikita
+ */
+public class IntArraySet extends PrimitiveArraySet<Integer, IntArraySet> {
+    private final int[] elems;
+
+    public IntArraySet() {
+        this(new int[0], 0, 0, false);
+    }
+
+    public IntArraySet(int... elems) {
+        this(sortedDistinct(elems.clone()), false);
+    }
+
+    public IntArraySet(Collection<? extends Integer> col) {
+        this(sortedDistinct(col.stream().mapToInt(Integer::intValue).toArray()), false);
+    }
+
+    private IntArraySet(int[] elems, boolean descending) {
+        this(elems, 0, elems.length, descending);
+    }
+
+    private IntArraySet(int[] elems, int from, int to, boolean descending) {
+        super(from, to, descending);
+        this.elems = elems;
+    }
+
+    private static int[] sortedDistinct(int[] elems) {
+        Arrays.sort(elems);
+        int size = 0;
+        for (int i = 0; i < elems.length; ++i) {
+            if (size == 0 || Integer.compare(elems[size - 1], elems[i]) != 0) {
+                elems[size++] = elems[i];
+            }
+        }
+        return size == elems.length ? elems : Arrays.copyOf(elems, size);
+    }
+
+    @Override
+    protected Integer boxed(int pos) {
+        return elems[pos];
+    }
+
+    @Override
+    protected int search(Integer key) {
+        return search(key.intValue());
+    }
+
+    private int search(int key) {
+        return Arrays.binarySearch(elems, from, to, key);
+    }
+
+    @Override
+    protected IntArraySet view(int from, int to, boolean descending) {
+        return new IntArraySet(elems, from, to, descending);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer value && contains(value.intValue());
+    }
+
+    public boolean contains(int value) {
+        return search(value) >= 0;
+    }
+
+    public int getInt(int index) {
+        return elems[pos(index)];
+    }
+
+    public int firstInt() {
+        return elems[firstPos()];
+    }
+
+    public int lastInt() {
+        return elems[lastPos()];
+    }
+
+    public int lowerInt(int value) {
+        return elems[present(lowerPos(search(value), false))];
+    }
+
+    public int floorInt(int value) {
+        return elems[present(lowerPos(search(value), true))];
+    }
+
+    public int ceilingInt(int value) {
+        return elems[present(higherPos(search(value), true))];
+    }
+
+    public int higherInt(int value) {
+        return elems[present(higherPos(search(value), false))];
+    }
+
+    public int[] toIntArray() {
+        if (!descending) {
+            return Arrays.copyOfRange(elems, from, to);
+        }
+        int[] res = new int[size()];
+        for (int i = 0; i < res.length; ++i) {
+            res[i] = elems[to - 1 - i];
+        }
+        return res;
+    }
+
+    @Override
+    public int hashCode() {
+        int res = 0;
+        for (int i = from; i < to; ++i) {
+            res += Integer.hashCode(elems[i]);
+        }
+        return res;
+    }
+}
@@ -0,0 +1,122 @@
+package info.kgeorgiy.ja.nebabin.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable navigable set of long values, which are stored unboxed in a sorted array.
+ * Besides {@link NavigableSet} methods, it has primitive ones, which do not box values.
+ * Primitive navigation methods throw {@link NoSuchElementException}, when there is no such element.
+ *
+ * @author Nebabin Nikita
+ */
+public class LongArraySet extends PrimitiveArraySet<Long, LongArraySet> {
+    private final long[] elems;
+
+    public LongArraySet() {
+        this(new long[0], 0, 0, false);
+    }
+
+    public LongArraySet(long... elems) {
+        this(sortedDistinct(elems.clone()), false);
+    }
+
+    public LongArraySet(Collection<? extends Long> col) {
+        this(sortedDistinct(col.stream().mapToLong(Long::longValue).toArray()), false);
+    }
+
+    private LongArraySet(long[] elems, boolean descending) {
+        this(elems, 0, elems.length, descending);
+    }
+
+    private LongArraySet(long[] elems, int from, int to, boolean descending) {
+        super(from, to, descending);
+        this.elems = elems;
+    }
+
+    private static long[] sortedDistinct(long[] elems) {
+        Arrays.sort(elems);
+        int size = 0;
+        for (int i = 0; i < elems.length; ++i) {
+            if (size == 0 || Long.compare(elems[size - 1], elems[i]) != 0) {
+                elems[size++] = elems[i];
+            }
+        }
+        return size == elems.length ? elems : Arrays.copyOf(elems, size);
+    }
+
+    @Override
+    protected Long boxed(int pos) {
+        return elems[pos];
+    }
+
+    @Override
+    protected int search(Long key) {
+        return search(key.longValue());
+    }
+
+    private int search(long key) {
+        return Arrays.binarySearch(elems, from, to, key);
+    }
+
+    @Override
+    protected LongArraySet view(int from, int to, boolean descending) {
+        return new LongArraySet(elems, from, to, descending);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Long value && contains(value.longValue());
+    }
+
+    public boolean contains(long value) {
+        return search(value) >= 0;
+    }
+
+    public long getLong(int index) {
+        return elems[pos(index)];
+    }
+
+    public long firstLong() {
+        return elems[firstPos()];
+    }
+
+    public long lastLong() {
+        return elems[lastPos()];
+    }
+
+    public long lowerLong(long value) {
+        return elems[present(lowerPos(search(value), false))];
+    }
+
+    public long floorLong(long value) {
+        return elems[present(lowerPos(search(value), true))];
+    }
+
+    public long ceilingLong(long value) {
+        return elems[present(higherPos(search(value), true))];
+    }
+
+    public long higherLong(long value) {
+        return elems[present(higherPos(search(value), false))];
+    }
+
+    public long[] toLongArray() {
+        if (!descending) {
+            return Arrays.copyOfRange(elems, from, to);
+        }
+        long[] res = new long[size()];
+        for (int i = 0; i < res.length; ++i) {
+            res[i] = elems[to - 1 - i];
+        }
+        return res;
+    }
+
+    @Override
+    public int hashCode() {
+        int res = 0;
+        for (int i = from; i < to; ++i) {
+            res += Long.hashCode(elems[i]);
+        }
+        return res;
+    }
+}
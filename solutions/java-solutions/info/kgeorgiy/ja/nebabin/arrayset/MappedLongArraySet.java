@@ -0,0 +1,346 @@
+package info.kgeorgiy.ja.nebabin.arrayset;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable navigable set of long values, which are read from a memory-mapped file written by {@link #write}.
+ * Opening maps the file without reading it, so it takes the same time for any size, and the values stay off heap.
+ * Views ({@link #subSet}, {@link #subList}, {@link #reversed} and others) share the mapping.
+ * Like {@link ArraySet}, it is a {@link List} as well, and besides these methods it has the primitive ones of {@link LongArraySet}.
+ * <p>
+ * File layout, all numbers are big-endian: {@code int magic, int key width (8), long count},
+ * followed by {@code count} distinct values in ascending order.
+ * Order of values is trusted and is not checked on opening.
+ * The file is mapped in windows of {@code 2^27} values (1 GiB), the mapping is released,
+ * when the set and all its views are unreachable.
+ *
+ * @author Nebabin Nikita
+ */
+public class MappedLongArraySet extends PrimitiveArraySet<Long, MappedLongArraySet> implements List<Long>, RandomAccess {
+    private static final AtomicLong TEMP_FILES = new AtomicLong();
+    private static final int MAGIC = 0x4D415331;
+    private static final int HEADER_SIZE = 16;
+    private static final int WINDOW_BITS = 27;
+    private static final int WINDOW_MASK = (1 << WINDOW_BITS) - 1;
+
+    private final ByteBuffer[] windows;
+
+    private MappedLongArraySet(ByteBuffer[] windows, int from, int to, boolean descending) {
+        super(from, to, descending);
+        this.windows = windows;
+    }
+
+    /**
+     * Maps set of values, which were written to {@code file} by {@link #write}.
+     *
+     * @throws IOException if the file can not be read or is not a set file
+     */
+    public static MappedLongArraySet open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new IOException("File is too short for a set of long values.");
+                }
+            }
+            if (header.getInt(0) != MAGIC || header.getInt(4) != Long.BYTES) {
+                throw new IOException("File does not contain a set of long values.");
+            }
+            long count = header.getLong(8);
+            if (count < 0 || count > Integer.MAX_VALUE - 8 || HEADER_SIZE + count * Long.BYTES != channel.size()) {
+                throw new IOException("Set of long values is corrupted.");
+            }
+            ByteBuffer[] windows = new ByteBuffer[(int) ((count + WINDOW_MASK) >>> WINDOW_BITS)];
+            for (int i = 0; i < windows.length; ++i) {
+                long first = (long) i << WINDOW_BITS;
+                windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * Long.BYTES,
+                        Math.min(count - first, 1 << WINDOW_BITS) * Long.BYTES);
+            }
+            return new MappedLongArraySet(windows, 0, (int) count, false);
+        }
+    }
+
+    /**
+     * Writes {@code set}, which should be in natural order, to {@code file} streaming it,
+     * so the set does not have to fit in memory as a whole.
+     * The set is written to a temporary file next to {@code file}, which then replaces it,
+     * so sets, which are already mapped from {@code file}, stay valid.
+     *
+     * @throws IllegalArgumentException if the set has a comparator
+     */
+    public static void write(Path file, SortedSet<Long> set) throws IOException {
+        if (set.comparator() != null) {
+            throw new IllegalArgumentException("Set should be in natural order.");
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + "." + ProcessHandle.current().pid() + "." + TEMP_FILES.incrementAndGet() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(Long.BYTES);
+                out.writeLong(set.size());
+                if (set instanceof LongArraySet longs) {
+                    for (int i = 0; i < longs.size(); ++i) {
+                        out.writeLong(longs.getLong(i));
+                    }
+                } else {
+                    for (long value : set) {
+                        out.writeLong(value);
+                    }
+                }
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private long at(int pos) {
+        return windows[pos >>> WINDOW_BITS].getLong((pos & WINDOW_MASK) * Long.BYTES);
+    }
+
+    @Override
+    protected Long boxed(int pos) {
+        return at(pos);
+    }
+
+    @Override
+    protected int search(Long key) {
+        return search(key.longValue());
+    }
+
+    private int search(long key) {
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = Long.compare(at(mid), key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    @Override
+    protected MappedLongArraySet view(int from, int to, boolean descending) {
+        return new MappedLongArraySet(windows, from, to, descending);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Long value && contains(value.longValue());
+    }
+
+    public boolean contains(long value) {
+        return search(value) >= 0;
+    }
+
+    public long getLong(int index) {
+        return at(pos(index));
+    }
+
+    @Override
+    public Long get(int index) {
+        return getLong(index);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof Long value)) {
+            return -1;
+        }
+        int pos = search(value.longValue());
+        return pos < 0 ? -1 : descending ? to - 1 - pos : pos - from;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public ListIterator<Long> listIterator() {
+        return listIterator(0);
+    }
+
+    @Override
+    public ListIterator<Long> listIterator(int index) {
+        Objects.checkIndex(index, size() + 1);
+        return new ListIterator<>() {
+            private int cursor = index;
+
+            @Override
+            public boolean hasNext() {
+                return cursor < size();
+            }
+
+            @Override
+            public Long next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return get(cursor++);
+            }
+
+            @Override
+            public boolean hasPrevious() {
+                return cursor > 0;
+            }
+
+            @Override
+            public Long previous() {
+                if (!hasPrevious()) {
+                    throw new NoSuchElementException();
+                }
+                return get(--cursor);
+            }
+
+            @Override
+            public int nextIndex() {
+                return cursor;
+            }
+
+            @Override
+            public int previousIndex() {
+                return cursor - 1;
+            }
+
+            @Override
+            public void remove() {
+                throw unsupported();
+            }
+
+            @Override
+            public void set(Long value) {
+                throw unsupported();
+            }
+
+            @Override
+            public void add(Long value) {
+                throw unsupported();
+            }
+        };
+    }
+
+    @Override
+    public MappedLongArraySet subList(int fromIndex, int toIndex) {
+        Objects.checkFromToIndex(fromIndex, toIndex, size());
+        return descending ? view(to - toIndex, to - fromIndex, true) : view(from + fromIndex, from + toIndex, false);
+    }
+
+    @Override
+    public MappedLongArraySet reversed() {
+        return descendingSet();
+    }
+
+    @Override
+    public Long getFirst() {
+        return first();
+    }
+
+    @Override
+    public Long getLast() {
+        return last();
+    }
+
+    @Override
+    public Spliterator<Long> spliterator() {
+        return List.super.spliterator();
+    }
+
+    @Override
+    public Long set(int index, Long element) {
+        throw unsupported();
+    }
+
+    @Override
+    public void add(int index, Long element) {
+        throw unsupported();
+    }
+
+    @Override
+    public Long remove(int index) {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends Long> c) {
+        throw unsupported();
+    }
+
+    @Override
+    public void addFirst(Long value) {
+        throw unsupported();
+    }
+
+    @Override
+    public void addLast(Long value) {
+        throw unsupported();
+    }
+
+    @Override
+    public Long removeFirst() {
+        throw unsupported();
+    }
+
+    @Override
+    public Long removeLast() {
+        throw unsupported();
+    }
+
+    private static UnsupportedOperationException unsupported() {
+        return new UnsupportedOperationException("Trying to change unmodifiable collection.");
+    }
+
+    public long firstLong() {
+        return at(firstPos());
+    }
+
+    public long lastLong() {
+        return at(lastPos());
+    }
+
+    public long lowerLong(long value) {
+        return at(present(lowerPos(search(value), false)));
+    }
+
+    public long floorLong(long value) {
+        return at(present(lowerPos(search(value), true)));
+    }
+
+    public long ceilingLong(long value) {
+        return at(present(higherPos(search(value), true)));
+    }
+
+    public long higherLong(long value) {
+        return at(present(higherPos(search(value), false)));
+    }
+
+    @Override
+    public int hashCode() {
+        int res = 0;
+        for (int i = from; i < to; ++i) {
+            res += Long.hashCode(at(i));
+        }
+        return res;
+    }
+}
@@ -0,0 +1,207 @@
+package info.kgeorgiy.ja.nebabin.arrayset;
+
+import java.util.*;
+
+/**
+ * Base of immutable sets over sorted arrays of distinct primitives, {@code S} is the type of views.
+ * A set is a view of positions {@code [from, to)} of the array, which is iterated in ascending or descending order.
+ * Positions, which are passed between methods, are indices in the array, found positions are results of
+ * {@link Arrays#binarySearch} over {@code [from, to)}.
+ *
+ * @author Nebabin Nikita
+ */
+abstract class PrimitiveArraySet<E, S extends PrimitiveArraySet<E, S>> extends AbstractSet<E> implements NavigableSet<E> {
+    protected final int from;
+    protected final int to;
+    protected final boolean descending;
+
+    protected PrimitiveArraySet(int from, int to, boolean descending) {
+        this.from = from;
+        this.to = to;
+        this.descending = descending;
+    }
+
+    protected abstract E boxed(int pos);
+
+    protected abstract int search(E key);
+
+    protected abstract S view(int from, int to, boolean descending);
+
+    private int ceilingPos(int found, boolean inclusive) {
+        return found >= 0 ? (inclusive ? found : found + 1) : -(found + 1);
+    }
+
+    private int floorPos(int found, boolean inclusive) {
+        return found >= 0 ? (inclusive ? found : found - 1) : -(found + 1) - 1;
+    }
+
+    /**
+     * Returns position of the greatest element in this set order, which is less than the key, or {@code -1}.
+     */
+    protected int lowerPos(int found, boolean inclusive) {
+        return checked(descending ? ceilingPos(found, inclusive) : floorPos(found, inclusive));
+    }
+
+    /**
+     * Returns position of the least element in this set order, which is greater than the key, or {@code -1}.
+     */
+    protected int higherPos(int found, boolean inclusive) {
+        return checked(descending ? floorPos(found, inclusive) : ceilingPos(found, inclusive));
+    }
+
+    private int checked(int pos) {
+        return from <= pos && pos < to ? pos : -1;
+    }
+
+    /**
+     * Returns position of the element with index {@code index} in this set order.
+     */
+    protected int pos(int index) {
+        Objects.checkIndex(index, size());
+        return descending ? to - 1 - index : from + index;
+    }
+
+    protected int firstPos() {
+        return present(size() == 0 ? -1 : pos(0));
+    }
+
+    protected int lastPos() {
+        return present(size() == 0 ? -1 : pos(size() - 1));
+    }
+
+    protected static int present(int pos) {
+        if (pos < 0) {
+            throw new NoSuchElementException("There is no such element in set.");
+        }
+        return pos;
+    }
+
+    private E boxedOrNull(int pos) {
+        return pos < 0 ? null : boxed(pos);
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public E lower(E e) {
+        return boxedOrNull(lowerPos(search(e), false));
+    }
+
+    @Override
+    public E floor(E e) {
+        return boxedOrNull(lowerPos(search(e), true));
+    }
+
+    @Override
+    public E ceiling(E e) {
+        return boxedOrNull(higherPos(search(e), true));
+    }
+
+    @Override
+    public E higher(E e) {
+        return boxedOrNull(higherPos(search(e), false));
+    }
+
+    @Override
+    public E first() {
+        return boxed(firstPos());
+    }
+
+    @Override
+    public E last() {
+        return boxed(lastPos());
+    }
+
+    @Override
+    public E pollFirst() {
+        throw new UnsupportedOperationException("Method pollFirst is unsupported.");
+    }
+
+    @Override
+    public E pollLast() {
+        throw new UnsupportedOperationException("Method pollLast is unsupported.");
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return boxed(pos(index++));
+            }
+        };
+    }
+
+    @Override
+    public S descendingSet() {
+        return view(from, to, !descending);
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    @Override
+    public S subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        int cmp = compareNatural(fromElement, toElement);
+        if (descending ? cmp < 0 : cmp > 0) {
+            throw new IllegalArgumentException("Trying to get subset of invalid range");
+        }
+        int fromFound = search(fromElement);
+        int toFound = search(toElement);
+        int low = descending ? ceilingPos(toFound, toInclusive) : ceilingPos(fromFound, fromInclusive);
+        int high = descending ? floorPos(fromFound, fromInclusive) : floorPos(toFound, toInclusive);
+        return view(low, Math.max(low, high + 1), descending);
+    }
+
+    @Override
+    public S headSet(E toElement, boolean inclusive) {
+        int found = search(toElement);
+        return descending ? view(ceilingPos(found, inclusive), to, true) : view(from, floorPos(found, inclusive) + 1, false);
+    }
+
+    @Override
+    public S tailSet(E fromElement, boolean inclusive) {
+        int found = search(fromElement);
+        return descending ? view(from, floorPos(found, inclusive) + 1, true) : view(ceilingPos(found, inclusive), to, false);
+    }
+
+    @Override
+    public S subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public S headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public S tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return descending ? Collections.reverseOrder() : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> int compareNatural(E a, E b) {
+        return ((Comparable<? super E>) a).compareTo(b);
+    }
+}
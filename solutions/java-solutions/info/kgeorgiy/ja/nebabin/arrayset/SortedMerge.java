@@ -0,0 +1,136 @@
+package info.kgeorgiy.ja.nebabin.arrayset;
+
+import java.util.*;
+
+/**
+ * Merge of two sorted lists of distinct elements, which keeps elements present only in the first list,
+ * only in the second list or in both of them, depending on flags. Of equal elements the one of the first list is kept.
+ * <p>
+ * Lists of close sizes are merged in one linear pass. Otherwise every element of the smaller list is located
+ * in the larger one by galloping (exponential and then binary search) from the previous location,
+ * which takes {@code O(m log(n / m))} comparisons, and runs of the larger list are skipped or copied whole.
+ *
+ * @author Nebabin Nikita
+ */
+final class SortedMerge<E> {
+    private static final int GALLOP_RATIO = 8;
+
+    private final List<? extends E> first;
+    private final List<? extends E> second;
+    private final Comparator<? super E> order;
+    private final boolean onlyFirst;
+    private final boolean onlySecond;
+    private final boolean both;
+    private final E[] result;
+    private int size = 0;
+
+    @SuppressWarnings("unchecked")
+    private SortedMerge(List<? extends E> first, List<? extends E> second, Comparator<? super E> comp,
+                        boolean onlyFirst, boolean both, boolean onlySecond) {
+        this.first = first;
+        this.second = second;
+        this.order = comp == null ? (Comparator<? super E>) Comparator.naturalOrder() : comp;
+        this.onlyFirst = onlyFirst;
+        this.both = both;
+        this.onlySecond = onlySecond;
+        this.result = (E[]) new Object[(onlyFirst ? first.size() : 0) + (onlySecond ? second.size() : 0)
+                + (both && !onlyFirst && !onlySecond ? Math.min(first.size(), second.size()) : 0)];
+    }
+
+    /**
+     * Returns sorted array of elements, which are in {@code first} or in {@code second},
+     * according to the flags, both lists should be sorted by {@code comp} and have no duplicates.
+     */
+    static <E> E[] merge(List<? extends E> first, List<? extends E> second, Comparator<? super E> comp,
+                         boolean onlyFirst, boolean both, boolean onlySecond) {
+        SortedMerge<E> merge = new SortedMerge<>(first, second, comp, onlyFirst, both, onlySecond);
+        if ((long) Math.min(first.size(), second.size()) * GALLOP_RATIO < Math.max(first.size(), second.size())) {
+            merge.gallop();
+        } else {
+            merge.linear();
+        }
+        return merge.size == merge.result.length ? merge.result : Arrays.copyOf(merge.result, merge.size);
+    }
+
+    private void linear() {
+        int i = 0;
+        int j = 0;
+        while (i < first.size() && j < second.size()) {
+            int cmp = order.compare(first.get(i), second.get(j));
+            if (cmp < 0) {
+                emit(onlyFirst, first.get(i++));
+            } else if (cmp > 0) {
+                emit(onlySecond, second.get(j++));
+            } else {
+                emit(both, first.get(i++));
+                ++j;
+            }
+        }
+        emitRange(onlyFirst, first, i);
+        emitRange(onlySecond, second, j);
+    }
+
+    private void gallop() {
+        boolean firstSmall = first.size() < second.size();
+        List<? extends E> small = firstSmall ? first : second;
+        List<? extends E> large = firstSmall ? second : first;
+        boolean onlySmall = firstSmall ? onlyFirst : onlySecond;
+        boolean onlyLarge = firstSmall ? onlySecond : onlyFirst;
+        int from = 0;
+        for (E elem : small) {
+            int pos = gallop(large, from, elem, order);
+            if (onlyLarge) {
+                for (int k = from; k < pos; ++k) {
+                    emit(true, large.get(k));
+                }
+            }
+            if (pos < large.size() && order.compare(large.get(pos), elem) == 0) {
+                emit(both, firstSmall ? elem : large.get(pos));
+                from = pos + 1;
+            } else {
+                emit(onlySmall, elem);
+                from = pos;
+            }
+        }
+        emitRange(onlyLarge, large, from);
+    }
+
+    /**
+     * Returns index of the first element of {@code list}, which is not less than {@code key}, starting from {@code from}.
+     * Takes {@code O(log d)} comparisons, where {@code d} is the distance from {@code from} to the result.
+     */
+    static <E> int gallop(List<? extends E> list, int from, E key, Comparator<? super E> order) {
+        int step = 1;
+        int low = from;
+        int high = from;
+        while (high < list.size() && order.compare(list.get(high), key) < 0) {
+            low = high + 1;
+            high = from + step;
+            step *= 2;
+        }
+        high = Math.min(high, list.size());
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (order.compare(list.get(mid), key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void emit(boolean keep, E elem) {
+        if (keep) {
+            result[size++] = elem;
+        }
+    }
+
+    private void emitRange(boolean keep, List<? extends E> list, int from) {
+        if (keep) {
+            for (int k = from; k < list.size(); ++k) {
+                result[size++] = list.get(k);
+            }
+        }
+    }
+}
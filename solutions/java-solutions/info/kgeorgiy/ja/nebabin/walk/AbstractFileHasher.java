@@ -1,26 +1,43 @@
 package info.kgeorgiy.ja.nebabin.walk;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
 
 public abstract class AbstractFileHasher extends SimpleFileVisitor<Path> {
-    private final BufferedWriter output;
+    private static final long MAP_THRESHOLD = 1 << 20;
+    private static final long MAP_CHUNK = 1 << 30;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final ThreadLocal<ByteBuffer> BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
 
-    public AbstractFileHasher(BufferedWriter output) {
+    private final HashWriter output;
+    private HashCache cache = null;
+    private WalkMetrics metrics = null;
+    private boolean binary = false;
+    private boolean metadata = false;
+    private long readNanos;
+    private long readBytes;
+    private byte[] digest = null;
+    private byte[] zeros = null;
+
+    public AbstractFileHasher(HashWriter output) {
         super();
         this.output = output;
     }
 
     @Override
     public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
-        output.write(defaultHash() + " " + file.toString());
-        output.newLine();
+        if (metrics != null) {
+            metrics.error();
+        }
+        writeResult(zeros(), file.toString(), file);
         return FileVisitResult.CONTINUE;
     }
 
@@ -30,25 +47,197 @@ public abstract class AbstractFileHasher extends SimpleFileVisitor<Path> {
         return FileVisitResult.CONTINUE;
     }
 
+    void writeDefault(String input) throws IOException {
+        if (metrics != null) {
+            metrics.error();
+        }
+        writeResult(zeros(), input, null);
+    }
+
+    byte[] take() throws IOException {
+        return output.take();
+    }
+
+    void writeLines(byte[] lines) throws IOException {
+        output.write(lines);
+    }
+
+    void useCache(HashCache cache) {
+        this.cache = cache;
+    }
+
+    void useMetrics(WalkMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    void useBinary(boolean metadata) {
+        this.binary = true;
+        this.metadata = metadata;
+    }
+
+    private void writeResult(byte[] digest, String name, Path file) throws IOException {
+        if (!binary) {
+            writeHex(output, digest, 0);
+            output.space();
+            output.text(name);
+            output.newLine();
+            return;
+        }
+        output.rawInt(HashWriter.utf8Length(name));
+        output.text(name);
+        output.raw(digest, 0, digest.length);
+        if (metadata) {
+            long size = -1;
+            long mtime = 0;
+            if (file != null) {
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                    size = attrs.size();
+                    mtime = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+                } catch (IOException ignored) {
+                }
+            }
+            output.rawLong(size);
+            output.rawLong(mtime);
+        }
+    }
+
     public void visitFile(Path file) throws IOException {
-        String hash;
-        try (InputStream info = Files.newInputStream(file)) {
-            byte[] data = new byte[1024];
-            int cnt;
-            while ((cnt = info.read(data)) >= 0) {
-                update(data, cnt);
-            }
-            hash = digest();
+        writeResult(hash(file) ? digestBytes() : zeros(), file.toString(), file);
+    }
+
+    boolean hash(Path file) {
+        HashCache.Key key = null;
+        if (cache != null && (key = cache.key(file)) != null && cache.lookup(key, digestBytes())) {
+            if (metrics != null) {
+                metrics.cacheHit();
+            }
+            return true;
+        }
+        long started = metrics == null ? 0 : System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long opened = metrics == null ? 0 : System.nanoTime();
+            readNanos = 0;
+            readBytes = 0;
+            long size = channel.size();
+            if (size >= MAP_THRESHOLD) {
+                mapChannel(channel, size);
+            } else {
+                readChannel(channel);
+            }
+            digest(digestBytes(), 0);
+            if (key != null) {
+                cache.store(key, digestBytes());
+            }
+            if (metrics != null) {
+                metrics.file(readBytes, opened - started, readNanos, System.nanoTime() - opened - readNanos);
+            }
+            return true;
         } catch (IOException e) {
-            hash = defaultHash();
+            reset();
+            if (metrics != null) {
+                metrics.error();
+            }
+            return false;
         }
-        output.write(hash + " " + file);
-        output.newLine();
     }
 
-    protected abstract void update(byte[] info, int cnt);
+    HashCache.Key cacheKey(Path file) {
+        return cache == null ? null : cache.key(file);
+    }
 
-    protected abstract String defaultHash();
+    boolean isCached(HashCache.Key key) {
+        return key != null && cache.contains(key, digestLength());
+    }
 
-    protected abstract String digest();
+    /**
+     * Writes hash of {@code file} computed from its already read {@code contents}.
+     * {@code key} should be taken before the contents were read.
+     */
+    void visitFile(Path file, ByteBuffer contents, HashCache.Key key) throws IOException {
+        if (key == null || !cache.lookup(key, digestBytes())) {
+            long started = metrics == null ? 0 : System.nanoTime();
+            int size = contents.remaining();
+            update(contents);
+            digest(digestBytes(), 0);
+            if (key != null) {
+                cache.store(key, digestBytes());
+            }
+            if (metrics != null) {
+                metrics.file(size, -1, 0, System.nanoTime() - started);
+            }
+        } else if (metrics != null) {
+            metrics.cacheHit();
+        }
+        writeResult(digestBytes(), file.toString(), file);
+    }
+
+    byte[] digestBytes() {
+        if (digest == null) {
+            digest = new byte[digestLength()];
+        }
+        return digest;
+    }
+
+    private byte[] zeros() {
+        if (zeros == null) {
+            zeros = new byte[digestLength()];
+        }
+        return zeros;
+    }
+
+    private void mapChannel(FileChannel channel, long size) throws IOException {
+        for (long pos = 0; pos < size; pos += MAP_CHUNK) {
+            long length = Math.min(MAP_CHUNK, size - pos);
+            readBytes += length;
+            updateMapped(channel.map(FileChannel.MapMode.READ_ONLY, pos, length));
+        }
+        // File may have grown after size was taken
+        channel.position(size);
+        readChannel(channel);
+    }
+
+    private void readChannel(FileChannel channel) throws IOException {
+        ByteBuffer buffer = BUFFER.get();
+        buffer.clear();
+        while (read(channel, buffer) >= 0) {
+            buffer.flip();
+            update(buffer);
+            buffer.clear();
+        }
+    }
+
+    private int read(FileChannel channel, ByteBuffer buffer) throws IOException {
+        if (metrics == null) {
+            return channel.read(buffer);
+        }
+        long started = System.nanoTime();
+        int cnt = channel.read(buffer);
+        readNanos += System.nanoTime() - started;
+        readBytes += Math.max(cnt, 0);
+        return cnt;
+    }
+
+    protected void update(byte[] info, int cnt) {
+        update(ByteBuffer.wrap(info, 0, cnt));
+    }
+
+    protected abstract void update(ByteBuffer info);
+
+    /**
+     * Same as {@link #update(ByteBuffer)} for memory-mapped file contents, which stay valid after the call.
+     */
+    protected void updateMapped(ByteBuffer info) {
+        update(info);
+    }
+
+    protected abstract void reset();
+
+    protected abstract int digestLength();
+
+    protected abstract void digest(byte[] out, int offset);
+
+    protected void writeHex(HashWriter out, byte[] digest, int offset) throws IOException {
+        out.hex(digest, offset, digestLength());
+    }
 }
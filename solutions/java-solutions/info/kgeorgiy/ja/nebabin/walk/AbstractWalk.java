@@ -1,19 +1,207 @@
 package info.kgeorgiy.ja.nebabin.walk;
 
+import javax.management.JMException;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 public abstract class AbstractWalk {
+    private static final int TASKS_PER_THREAD = 64;
+    private static final int REORDER_PER_VIRTUAL_THREAD = 4;
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 20;
+
     public void walk(BufferedReader pathsFile, BufferedWriter output, String mode) throws WalkException {
-        AbstractFileHasher hasher;
-        switch (mode) {
-            case "jenkins" -> hasher = new FileJenkinsHasher(output);
-            case "sha-1" -> hasher = new ShaOneFileHasher(output);
-            default -> throw new WalkModeException("Incorrect mode of hashing in walk.");
+        HashWriter writer = new HashWriter(new WriterOutputStream(output));
+        walk(pathsFile, writer, mode);
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new WalkIOException("Can't write to output file.", e);
+        }
+    }
+
+    public void walk(BufferedReader pathsFile, HashWriter output, String mode) throws WalkException {
+        walk(pathsFile, output, mode, new WalkSettings());
+    }
+
+    public void walk(BufferedReader pathsFile, HashWriter output, String mode, WalkSettings settings) throws WalkException {
+        walk(pathsFile::readLine, output, mode, settings);
+    }
+
+    public void walk(LineReader pathsFile, HashWriter output, String mode, WalkSettings settings) throws WalkException {
+        Function<HashWriter, AbstractFileHasher> factory = HasherRegistry.getFactory(mode);
+        if (settings.isMetadata() && !settings.isBinary()) {
+            throw new WalkModeException("Option 'metadata' requires binary format.");
+        }
+        if (settings.isBinary()) {
+            factory = withBinary(output, mode, factory, settings);
+        }
+        HashCache cache = null;
+        if (settings.getCacheFile() != null) {
+            try {
+                cache = HashCache.load(settings.getCacheFile(), mode);
+            } catch (IOException e) {
+                throw new WalkIOException("Can't read hash cache.", e);
+            }
+            factory = withCache(factory, cache);
+        }
+        try (WalkMetrics metrics = settings.getProgressMillis() > 0 || settings.isJmx() ? new WalkMetrics() : null) {
+            if (metrics != null) {
+                startMetrics(metrics, settings);
+                factory = withMetrics(factory, metrics);
+            }
+            walk(pathsFile, output, mode, settings, factory, cache);
+        }
+    }
+
+    private static Function<HashWriter, AbstractFileHasher> withBinary(HashWriter output, String mode, Function<HashWriter, AbstractFileHasher> factory,
+                                                                       WalkSettings settings) throws WalkException {
+        if (settings.isDuplicates() || settings.isWatch()) {
+            throw new WalkModeException("Binary format is not supported by duplicates report and watch mode.");
+        }
+        try {
+            BinaryResultWriter.writeHeader(output, mode, factory.apply(HashWriter.inMemory()).digestLength(), settings.isMetadata());
+        } catch (IOException e) {
+            throw new WalkIOException("Can't write to output file.", e);
+        }
+        return writer -> {
+            AbstractFileHasher hasher = factory.apply(writer);
+            hasher.useBinary(settings.isMetadata());
+            return hasher;
+        };
+    }
+
+    private static void startMetrics(WalkMetrics metrics, WalkSettings settings) throws WalkException {
+        if (settings.isJmx()) {
+            try {
+                metrics.register();
+            } catch (JMException e) {
+                throw new WalkException("Can't register walk metrics.", e);
+            }
+        }
+        if (settings.getProgressMillis() > 0) {
+            metrics.startProgress(System.err, settings.getProgressMillis());
+        }
+    }
+
+    private void walk(LineReader pathsFile, HashWriter output, String mode, WalkSettings settings,
+                      Function<HashWriter, AbstractFileHasher> factory, HashCache cache) throws WalkException {
+        if (!settings.isWatch()) {
+            walkOnce(pathsFile, output, settings, factory, cache);
+            return;
+        }
+        List<String> roots = new ArrayList<>();
+        try {
+            String root;
+            while ((root = pathsFile.readLine()) != null) {
+                roots.add(root);
+            }
+        } catch (IOException e) {
+            throw new WalkIOException("Can't read from input file.", e);
+        }
+        // Roots are registered before the first walk, so changes made during it are not lost
+        try (TreeWatcher watcher = new TreeWatcher()) {
+            for (String root : roots) {
+                try {
+                    watchRoot(watcher, Path.of(root));
+                } catch (InvalidPathException | IOException ignored) {
+                }
+            }
+            Iterator<String> rootsIterator = roots.iterator();
+            walkOnce(() -> rootsIterator.hasNext() ? rootsIterator.next() : null, output, settings, factory, cache);
+            watch(watcher, output, factory, cache);
+        } catch (IOException e) {
+            throw new WalkIOException("Can't watch for changes.", e);
+        }
+    }
+
+    private void walkOnce(LineReader pathsFile, HashWriter output, WalkSettings settings,
+                          Function<HashWriter, AbstractFileHasher> factory, HashCache cache) throws WalkException {
+        if (settings.isDuplicates()) {
+            reportDuplicates(pathsFile, output, factory, settings);
+        } else if (settings.getVirtualThreads() > 0) {
+            try (VirtualTreeWalk virtual = new VirtualTreeWalk(factory, settings.getVirtualThreads(), isRecursive())) {
+                walkParallel(pathsFile, output, factory, settings.isOrdered(), settings.getVirtualThreads() * REORDER_PER_VIRTUAL_THREAD,
+                        virtual::submit);
+            }
+        } else if (settings.getThreads() > 1) {
+            ForkJoinPool pool = new ForkJoinPool(settings.getThreads());
+            try {
+                walkParallel(pathsFile, output, factory, settings.isOrdered(), settings.getThreads() * TASKS_PER_THREAD,
+                        new ParallelTreeWalk(factory, pool, isRecursive())::submit);
+            } finally {
+                pool.shutdownNow();
+            }
+        } else {
+            walkSequential(pathsFile, output, factory, settings,
+                    settings.isForkJoin() ? new ParallelTreeWalk(factory, ForkJoinPool.commonPool(), isRecursive()) : null);
+        }
+        if (cache != null) {
+            try {
+                cache.save();
+            } catch (IOException e) {
+                throw new WalkIOException("Can't write hash cache.", e);
+            }
+        }
+    }
+
+    private void watch(TreeWatcher watcher, HashWriter output, Function<HashWriter, AbstractFileHasher> factory, HashCache cache) throws IOException {
+        AbstractFileHasher hasher = factory.apply(output);
+        output.flush();
+        watcher.run(path -> handlePath(path, hasher), () -> {
+            output.flush();
+            if (cache != null) {
+                cache.save();
+            }
+        });
+    }
+
+    protected void watchRoot(TreeWatcher watcher, Path root) throws IOException {
+        watcher.registerFile(root);
+    }
+
+    private static Function<HashWriter, AbstractFileHasher> withMetrics(Function<HashWriter, AbstractFileHasher> factory, WalkMetrics metrics) {
+        return writer -> {
+            AbstractFileHasher hasher = factory.apply(writer);
+            hasher.useMetrics(metrics);
+            return hasher;
+        };
+    }
+
+    private static Function<HashWriter, AbstractFileHasher> withCache(Function<HashWriter, AbstractFileHasher> factory, HashCache cache) {
+        return writer -> {
+            AbstractFileHasher hasher = factory.apply(writer);
+            hasher.useCache(cache);
+            return hasher;
+        };
+    }
+
+    private void walkSequential(LineReader pathsFile, HashWriter output, Function<HashWriter, AbstractFileHasher> factory,
+                                WalkSettings settings, ParallelTreeWalk tree) throws WalkException {
+        AbstractFileHasher hasher = factory.apply(output);
+        if (settings.getPrefetchFiles() > 0) {
+            walkPrefetched(new Prefetcher(pathsFile, hasher, settings.getPrefetchFiles(), settings.getPrefetchBytes()), hasher, settings, tree);
+            return;
         }
         String curInput;
         try {
@@ -22,12 +210,11 @@ public abstract class AbstractWalk {
                 try {
                     curPath = Path.of(curInput);
                 } catch (InvalidPathException e) {
-                    output.write(hasher.defaultHash() + " " + curInput);
-                    output.newLine();
+                    hasher.writeDefault(curInput);
                     continue;
                 }
                 try {
-                    handlePath(curPath, hasher);
+                    handleRoot(curPath, hasher, tree, settings);
                 } catch (IOException e) {
                     throw new WalkIOException("Can't write to output file.", e);
                 }
@@ -37,8 +224,121 @@ public abstract class AbstractWalk {
         }
     }
 
+    private void walkPrefetched(Prefetcher prefetcher, AbstractFileHasher hasher, WalkSettings settings, ParallelTreeWalk tree) throws WalkException {
+        Prefetcher.Entry entry;
+        try {
+            while ((entry = prefetcher.next()) != null) {
+                try {
+                    if (entry.path() == null) {
+                        hasher.writeDefault(entry.input());
+                        continue;
+                    }
+                    ByteBuffer contents = entry.contents();
+                    if (contents != null) {
+                        hasher.visitFile(entry.path(), contents, entry.key());
+                    } else {
+                        handleRoot(entry.path(), hasher, tree, settings);
+                    }
+                } catch (IOException e) {
+                    throw new WalkIOException("Can't write to output file.", e);
+                }
+            }
+        } catch (IOException e) {
+            throw new WalkIOException("Can't read from input file.", e);
+        }
+    }
+
+    /**
+     * Walks paths through {@code task}, keeping at most {@code window} of them in flight,
+     * lines of all paths are written through one {@link TreeOutput}.
+     */
+    private void walkParallel(LineReader pathsFile, HashWriter output, Function<HashWriter, AbstractFileHasher> factory,
+                              boolean ordered, int window, RootTask task) throws WalkException {
+        AbstractFileHasher defaultHasher = factory.apply(HashWriter.inMemory());
+        TreeOutput lines = new TreeOutput(factory.apply(output), ordered);
+        Queue<Future<Void>> results = new ArrayDeque<>();
+        try {
+            String curInput;
+            while ((curInput = pathsFile.readLine()) != null) {
+                while (results.size() == window || (!results.isEmpty() && results.peek().isDone())) {
+                    awaitRoot(results.poll());
+                }
+                TreeOutput.Entry entry = lines.root();
+                Path curPath;
+                try {
+                    curPath = Path.of(curInput);
+                } catch (InvalidPathException e) {
+                    defaultHasher.writeDefault(curInput);
+                    writeDefault(entry, defaultHasher.take());
+                    continue;
+                }
+                results.add(task.submit(curPath, entry));
+            }
+            while (!results.isEmpty()) {
+                awaitRoot(results.poll());
+            }
+        } catch (IOException e) {
+            throw new WalkIOException("Can't read from input file.", e);
+        }
+    }
+
+    private static void writeDefault(TreeOutput.Entry entry, byte[] line) throws WalkException {
+        try {
+            entry.write(line);
+        } catch (IOException e) {
+            throw new WalkIOException("Can't write to output file.", e);
+        }
+    }
+
+    /**
+     * Waits for walk of a path. Input and output errors are reported as {@link WalkIOException},
+     * other exceptions and errors are rethrown as is.
+     */
+    private static void awaitRoot(Future<Void> result) throws WalkException {
+        try {
+            result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WalkException("Was interrupted while waiting for hashes.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof UncheckedIOException unchecked ? unchecked.getCause() : e.getCause();
+            if (cause instanceof IOException) {
+                throw new WalkIOException("Can't write to output file.", cause);
+            } else if (cause instanceof RuntimeException exception) {
+                throw exception;
+            } else if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new WalkException("Can't hash path.", cause);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RootTask {
+        Future<Void> submit(Path path, TreeOutput.Entry entry);
+    }
+
     abstract protected void handlePath(Path path, AbstractFileHasher hasher) throws IOException;
 
+    protected void reportDuplicates(LineReader pathsFile, HashWriter output, Function<HashWriter, AbstractFileHasher> factory, WalkSettings settings) throws WalkException {
+        throw new WalkModeException("Duplicates report is supported by recursive walk only.");
+    }
+
+    /**
+     * Returns whether directories are walked recursively, otherwise every path is hashed as a file.
+     */
+    protected boolean isRecursive() {
+        return false;
+    }
+
+    private void handleRoot(Path path, AbstractFileHasher hasher, ParallelTreeWalk tree, WalkSettings settings) throws IOException {
+        if (tree != null) {
+            tree.walk(path, new TreeOutput(hasher, settings.isOrdered()).root());
+        } else {
+            handlePath(path, hasher);
+        }
+    }
+
     public static Path getPath(String path) {
         try {
             return Path.of(path);
@@ -49,19 +349,40 @@ public abstract class AbstractWalk {
     }
 
     public static void walkBase(String[] args, AbstractWalk walker) {
+        if (args == null) {
+            System.err.println("Incorrect amount of parameters.");
+            return;
+        }
+        List<String> params = new ArrayList<>();
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg != null && arg.startsWith("--")) {
+                int sep = arg.indexOf('=');
+                options.put(sep < 0 ? arg.substring(2) : arg.substring(2, sep), sep < 0 ? "" : arg.substring(sep + 1));
+            } else {
+                params.add(arg);
+            }
+        }
         String mode = "jenkins";
-        if (args == null || args.length < 2 || args.length > 3) {
+        if (params.size() < 2 || params.size() > 3) {
             System.err.println("Incorrect amount of parameters.");
             return;
         }
-        if (args.length == 3) {
-            mode = args[2];
+        if (params.size() == 3) {
+            mode = params.get(2);
+        }
+        WalkSettings settings;
+        try {
+            settings = WalkSettings.parse(options);
+        } catch (WalkModeException e) {
+            System.err.println(e.getMessage());
+            return;
         }
         Path inpFile;
         Path outFile;
         try {
-            inpFile = getPath(args[0]);
-            outFile = getPath(args[1]);
+            inpFile = getPath(params.get(0));
+            outFile = getPath(params.get(1));
         } catch (InvalidPathException e) {
             System.err.println("'" + e.getInput() + "' is not a valid path.");
             return;
@@ -76,9 +397,9 @@ public abstract class AbstractWalk {
         } catch (IOException e) {
             System.err.println("Can't create directories for output file.");
         }
-        try (BufferedReader inp = Files.newBufferedReader(inpFile)) {
-            try (BufferedWriter out = Files.newBufferedWriter(outFile)) {
-                walker.walk(inp, out, mode);
+        try (LineReader inp = LineReader.open(inpFile)) {
+            try (HashWriter out = new HashWriter(openOutput(outFile, settings), OUTPUT_BUFFER_SIZE)) {
+                walker.walk(inp, out, mode, settings);
             } catch (WalkException e) {
                 System.err.println(e.getMessage());
             } catch (IOException e) {
@@ -88,4 +409,10 @@ public abstract class AbstractWalk {
             System.err.println("Can't create input file.");
         }
     }
+
+    private static OutputStream openOutput(Path outFile, WalkSettings settings) throws IOException {
+        OutputStream out = Channels.newOutputStream(FileChannel.open(outFile,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+        return settings.isBinary() ? new BinaryResultWriter(out) : out;
+    }
 }
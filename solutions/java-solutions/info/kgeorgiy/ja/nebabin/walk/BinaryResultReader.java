@@ -0,0 +1,191 @@
+package info.kgeorgiy.ja.nebabin.walk;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reader of files written through {@link BinaryResultWriter}.
+ * The index is memory-mapped, so {@link #find(String)} is a binary search by path hash,
+ * followed by reading of the candidate records.
+ */
+public class BinaryResultReader implements Closeable, Iterable<BinaryResultReader.Entry> {
+    private static final int INDEX_ENTRY = 2 * Long.BYTES;
+    private static final int WINDOW = 1 << 16;
+
+    private final FileChannel channel;
+    private final String mode;
+    private final int digestLength;
+    private final boolean metadata;
+    private final long recordsStart;
+    private final long recordsEnd;
+    private final long count;
+    private final ByteBuffer index;
+
+    private BinaryResultReader(FileChannel channel) throws IOException {
+        this.channel = channel;
+        long size = channel.size();
+        if (size < BinaryResultWriter.HEADER_SIZE + BinaryResultWriter.TRAILER_SIZE) {
+            throw new IOException("File is too short for binary results.");
+        }
+        ByteBuffer header = readFully(0, BinaryResultWriter.HEADER_SIZE);
+        ByteBuffer trailer = readFully(size - BinaryResultWriter.TRAILER_SIZE, BinaryResultWriter.TRAILER_SIZE);
+        if (header.getInt(0) != BinaryResultWriter.MAGIC || trailer.getInt(16) != BinaryResultWriter.MAGIC) {
+            throw new IOException("File does not contain binary results.");
+        }
+        metadata = (header.getInt(4) & BinaryResultWriter.METADATA) != 0;
+        digestLength = header.getInt(8);
+        int modeLength = header.getInt(12);
+        mode = StandardCharsets.UTF_8.decode(readFully(BinaryResultWriter.HEADER_SIZE, modeLength)).toString();
+        recordsStart = BinaryResultWriter.HEADER_SIZE + modeLength;
+        recordsEnd = trailer.getLong(0);
+        count = trailer.getLong(8);
+        if (recordsEnd < recordsStart || count < 0 || count > Integer.MAX_VALUE / INDEX_ENTRY
+                || recordsEnd + count * INDEX_ENTRY + BinaryResultWriter.TRAILER_SIZE != size) {
+            throw new IOException("Index of binary results is corrupted.");
+        }
+        index = channel.map(FileChannel.MapMode.READ_ONLY, recordsEnd, count * INDEX_ENTRY);
+    }
+
+    public static BinaryResultReader open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new BinaryResultReader(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public String mode() {
+        return mode;
+    }
+
+    public int digestLength() {
+        return digestLength;
+    }
+
+    public boolean hasMetadata() {
+        return metadata;
+    }
+
+    public long size() {
+        return count;
+    }
+
+    /**
+     * Returns the first record of {@code path} in file order, or {@code null}, if there is none.
+     */
+    public Entry find(String path) throws IOException {
+        byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+        long hash = BinaryResultWriter.pathHash(bytes, 0, bytes.length);
+        int left = 0;
+        int right = (int) count;
+        while (left < right) {
+            int mid = (left + right) >>> 1;
+            if (Long.compareUnsigned(index.getLong(mid * INDEX_ENTRY), hash) < 0) {
+                left = mid + 1;
+            } else {
+                right = mid;
+            }
+        }
+        for (int i = left; i < count && index.getLong(i * INDEX_ENTRY) == hash; ++i) {
+            long offset = index.getLong(i * INDEX_ENTRY + Long.BYTES);
+            ByteBuffer length = readFully(offset, Integer.BYTES);
+            if (length.getInt(0) == bytes.length
+                    && Arrays.equals(readFully(offset + Integer.BYTES, bytes.length).array(), bytes)) {
+                return read(offset);
+            }
+        }
+        return null;
+    }
+
+    private Entry read(long offset) throws IOException {
+        int pathLength = readFully(offset, Integer.BYTES).getInt(0);
+        return decode(pathLength, readFully(offset + Integer.BYTES, tailLength(pathLength)));
+    }
+
+    private int tailLength(int pathLength) {
+        return pathLength + digestLength + (metadata ? 2 * Long.BYTES : 0);
+    }
+
+    private Entry decode(int pathLength, ByteBuffer tail) {
+        byte[] path = new byte[pathLength];
+        tail.get(path);
+        byte[] digest = new byte[digestLength];
+        tail.get(digest);
+        long size = metadata ? tail.getLong() : -1;
+        long mtime = metadata ? tail.getLong() : 0;
+        return new Entry(new String(path, StandardCharsets.UTF_8), digest, size, mtime);
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Binary results are truncated.");
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Iterates over records in file order. Read errors are thrown as {@link UncheckedIOException}.
+     */
+    @Override
+    public Iterator<Entry> iterator() {
+        return new Iterator<>() {
+            private ByteBuffer window = ByteBuffer.allocate(0);
+            private long windowStart = recordsStart;
+            private long position = recordsStart;
+
+            @Override
+            public boolean hasNext() {
+                return position < recordsEnd;
+            }
+
+            @Override
+            public Entry next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    int pathLength = at(position, Integer.BYTES).getInt();
+                    int tailLength = tailLength(pathLength);
+                    Entry entry = decode(pathLength, at(position + Integer.BYTES, tailLength));
+                    position += Integer.BYTES + tailLength;
+                    return entry;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            private ByteBuffer at(long from, int length) throws IOException {
+                if (from + length > windowStart + window.limit()) {
+                    window = readFully(from, (int) Math.min(Math.max(length, WINDOW), recordsEnd - from));
+                    windowStart = from;
+                }
+                return window.slice((int) (from - windowStart), length);
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Record of one path. {@code size} is {@code -1} and {@code mtime} is {@code 0}, if they were not written.
+     */
+    public record Entry(String path, byte[] digest, long size, long mtime) {}
+}
@@ -0,0 +1,211 @@
+package info.kgeorgiy.ja.nebabin.walk;
+
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Stream of binary walk results, which appends an index footer on {@link #close()}.
+ * <p>
+ * File layout, all numbers are big-endian:
+ * <ul>
+ *     <li>header: {@code int magic, int flags, int digest length, int mode length, mode bytes};</li>
+ *     <li>records: {@code int path length, UTF-8 path bytes, raw digest bytes},
+ *     followed by {@code long size, long mtime ns}, if {@value #METADATA} flag is set;
+ *     paths, which were not hashed, have zero digest, size {@code -1} and mtime {@code 0};</li>
+ *     <li>index: {@code count} pairs {@code long path hash, long record offset},
+ *     sorted by unsigned hash and then by offset, where hash is {@link #pathHash};</li>
+ *     <li>trailer: {@code long index offset, long count, int magic}.</li>
+ * </ul>
+ * Records are parsed as they pass through the stream, so they may be written in any blocks.
+ * The index takes 16 bytes of memory per record until the stream is closed.
+ * See {@link BinaryResultReader} for reading.
+ */
+public class BinaryResultWriter extends FilterOutputStream {
+    static final int MAGIC = 0x57484231;
+    static final int METADATA = 1;
+    static final int HEADER_SIZE = 16;
+    static final int TRAILER_SIZE = 20;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final int HEADER = 0;
+    private static final int MODE = 1;
+    private static final int LENGTH = 2;
+    private static final int PATH = 3;
+    private static final int TAIL = 4;
+
+    private final byte[] scratch = new byte[HEADER_SIZE];
+    private int state = HEADER;
+    private int have = 0;
+    private long remaining = HEADER_SIZE;
+    private long position = 0;
+    private long recordStart;
+    private long hash;
+    private int tailLength;
+
+    private long[] hashes = new long[1 << 10];
+    private long[] offsets = new long[1 << 10];
+    private int count = 0;
+
+    public BinaryResultWriter(OutputStream out) {
+        super(out);
+    }
+
+    static void writeHeader(HashWriter output, String mode, int digestLength, boolean metadata) throws IOException {
+        byte[] modeBytes = mode.getBytes(StandardCharsets.UTF_8);
+        output.rawInt(MAGIC);
+        output.rawInt(metadata ? METADATA : 0);
+        output.rawInt(digestLength);
+        output.rawInt(modeBytes.length);
+        output.raw(modeBytes, 0, modeBytes.length);
+    }
+
+    /**
+     * 64-bit FNV-1a hash of UTF-8 path bytes.
+     */
+    public static long pathHash(byte[] bytes, int offset, int length) {
+        return fnv(FNV_OFFSET, bytes, offset, length);
+    }
+
+    private static long fnv(long hash, byte[] bytes, int offset, int length) {
+        for (int i = offset; i < offset + length; ++i) {
+            hash = (hash ^ (bytes[i] & 0xFF)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        int end = off + len;
+        while (off < end) {
+            int cnt = (int) Math.min(remaining, end - off);
+            switch (state) {
+                case HEADER, LENGTH -> System.arraycopy(b, off, scratch, have, cnt);
+                case PATH -> hash = fnv(hash, b, off, cnt);
+                default -> {
+                }
+            }
+            off += cnt;
+            have += cnt;
+            remaining -= cnt;
+            position += cnt;
+            if (remaining == 0) {
+                next();
+            }
+        }
+    }
+
+    private void next() throws IOException {
+        switch (state) {
+            case HEADER -> {
+                if (readInt(0) != MAGIC) {
+                    throw new IOException("Binary results should start with a header.");
+                }
+                tailLength = readInt(8) + ((readInt(4) & METADATA) != 0 ? 2 * Long.BYTES : 0);
+                start(MODE, readInt(12));
+            }
+            case MODE, TAIL -> {
+                recordStart = position;
+                start(LENGTH, Integer.BYTES);
+            }
+            case LENGTH -> {
+                hash = FNV_OFFSET;
+                start(PATH, readInt(0));
+            }
+            case PATH -> {
+                add(hash, recordStart);
+                start(TAIL, tailLength);
+            }
+            default -> throw new AssertionError();
+        }
+        if (remaining == 0) {
+            next();
+        }
+    }
+
+    private void start(int state, long length) {
+        this.state = state;
+        this.have = 0;
+        this.remaining = length;
+    }
+
+    private int readInt(int offset) {
+        return ((scratch[offset] & 0xFF) << 24) | ((scratch[offset + 1] & 0xFF) << 16)
+                | ((scratch[offset + 2] & 0xFF) << 8) | (scratch[offset + 3] & 0xFF);
+    }
+
+    private void add(long hash, long offset) {
+        if (count == hashes.length) {
+            hashes = Arrays.copyOf(hashes, 2 * count);
+            offsets = Arrays.copyOf(offsets, 2 * count);
+        }
+        hashes[count] = hash;
+        offsets[count] = offset;
+        ++count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (position == 0) {
+                return;
+            }
+            if (state != LENGTH || have != 0) {
+                throw new IOException("Binary results end in the middle of " + (state == HEADER ? "header." : "record."));
+            }
+            sortIndex();
+            DataOutputStream data = new DataOutputStream(out);
+            for (int i = 0; i < count; ++i) {
+                data.writeLong(hashes[i]);
+                data.writeLong(offsets[i]);
+            }
+            data.writeLong(position);
+            data.writeLong(count);
+            data.writeInt(MAGIC);
+            data.flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Stable LSD radix sort by unsigned hash, so offsets of equal hashes stay ascending.
+     */
+    private void sortIndex() {
+        long[] hashBuffer = new long[count];
+        long[] offsetBuffer = new long[count];
+        int[] counts = new int[1 << 16];
+        for (int shift = 0; shift < Long.SIZE; shift += 16) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < count; ++i) {
+                ++counts[(int) (hashes[i] >>> shift) & 0xFFFF];
+            }
+            for (int i = 0, sum = 0; i < counts.length; ++i) {
+                int cnt = counts[i];
+                counts[i] = sum;
+                sum += cnt;
+            }
+            for (int i = 0; i < count; ++i) {
+                int to = counts[(int) (hashes[i] >>> shift) & 0xFFFF]++;
+                hashBuffer[to] = hashes[i];
+                offsetBuffer[to] = offsets[i];
+            }
+            long[] swap = hashes;
+            hashes = hashBuffer;
+            hashBuffer = swap;
+            swap = offsets;
+            offsets = offsetBuffer;
+            offsetBuffer = swap;
+        }
+    }
+}
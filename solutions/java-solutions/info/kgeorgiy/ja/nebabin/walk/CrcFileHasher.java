@@ -0,0 +1,42 @@
+package info.kgeorgiy.ja.nebabin.walk;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+public class CrcFileHasher extends AbstractFileHasher {
+    private final CRC32C crc = new CRC32C();
+
+    public CrcFileHasher(HashWriter output) {
+        super(output);
+    }
+
+    @Override
+    protected void update(byte[] info, int cnt) {
+        crc.update(info, 0, cnt);
+    }
+
+    @Override
+    protected void update(ByteBuffer info) {
+        crc.update(info);
+    }
+
+    @Override
+    protected void reset() {
+        crc.reset();
+    }
+
+    @Override
+    protected int digestLength() {
+        return Integer.BYTES;
+    }
+
+    @Override
+    protected void digest(byte[] out, int offset) {
+        int value = (int) crc.getValue();
+        out[offset] = (byte) (value >>> 24);
+        out[offset + 1] = (byte) (value >>> 16);
+        out[offset + 2] = (byte) (value >>> 8);
+        out[offset + 3] = (byte) value;
+        crc.reset();
+    }
+}
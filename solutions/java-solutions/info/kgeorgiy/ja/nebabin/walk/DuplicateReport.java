@@ -0,0 +1,242 @@
+package info.kgeorgiy.ja.nebabin.walk;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Collects files with their sizes and reports groups of files with equal size and digest.
+ * Files with unique size are never read, a file, which is found twice, is kept once.
+ * Paths are kept as UTF-8 bytes in one array, digests of all candidates are kept in one array as well,
+ * so no objects are kept per file. Only a path, which can't be restored from its name, is kept as is.
+ * Groups are found through a {@link LongIntHashMap} from 64-bit fingerprint of digest and size
+ * to the first file of the group, other files of the group are chained through an {@code int} array.
+ * A chain is split into groups of equal size and digest in one pass, groups and their members are linked
+ * through {@code int} arrays as well.
+ */
+class DuplicateReport {
+    private static final int INITIAL_FILES = 16;
+    private static final int INITIAL_NAMES = 1 << 12;
+
+    private final LongIntHashMap byName = new LongIntHashMap();
+    private final Map<Integer, Path> unrestorable = new HashMap<>();
+    private byte[] names = new byte[INITIAL_NAMES];
+    private int[] ends = new int[INITIAL_FILES];
+    private int[] sameName = new int[INITIAL_FILES];
+    private long[] sizes = new long[INITIAL_FILES];
+    private int count = 0;
+
+    void add(Path file, long size) {
+        String text = file.toString();
+        byte[] name = text.getBytes(StandardCharsets.UTF_8);
+        long key = fingerprint(name, 0, name.length, 0);
+        // Different paths, which can't be restored, may have the same name
+        Path kept = restorable(file, text, name) ? null : file;
+        int first = byName.get(key);
+        for (int j = first; j >= 0; j = sameName[j]) {
+            if (Arrays.equals(names, start(j), ends[j], name, 0, name.length) && Objects.equals(unrestorable.get(j), kept)) {
+                return;
+            }
+        }
+        if (count == sizes.length) {
+            ends = Arrays.copyOf(ends, count * 2);
+            sameName = Arrays.copyOf(sameName, count * 2);
+            sizes = Arrays.copyOf(sizes, count * 2);
+        }
+        int start = start(count);
+        if (names.length - start < name.length) {
+            names = Arrays.copyOf(names, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(2L * names.length, (long) start + name.length)));
+        }
+        System.arraycopy(name, 0, names, start, name.length);
+        ends[count] = start + name.length;
+        sizes[count] = size;
+        sameName[count] = byName.put(key, count);
+        if (kept != null) {
+            unrestorable.put(count, kept);
+        }
+        ++count;
+    }
+
+    /**
+     * Returns whether {@code file} is the same path, as one with UTF-8 {@code name} of its {@code text}.
+     * Names of files, which are not valid in the encoding of file names, are not.
+     */
+    private static boolean restorable(Path file, String text, byte[] name) {
+        if (name.length == text.length()) {
+            return text.chars().allMatch(c -> c < 0x80);
+        }
+        try {
+            return file.equals(Path.of(new String(name, StandardCharsets.UTF_8)));
+        } catch (InvalidPathException e) {
+            return false;
+        }
+    }
+
+    private int start(int file) {
+        return file == 0 ? 0 : ends[file - 1];
+    }
+
+    private Path path(int file) {
+        Path path = unrestorable.get(file);
+        return path != null ? path : Path.of(new String(names, start(file), ends[file] - start(file), StandardCharsets.UTF_8));
+    }
+
+    void write(HashWriter output, Function<HashWriter, AbstractFileHasher> factory, int threads) throws WalkException {
+        AbstractFileHasher formatter = factory.apply(output);
+        int length = formatter.digestLength();
+        int n = count;
+        int[] slots = new int[n];
+        byte[] digests = hashCandidates(factory, threads, length, slots);
+        LongIntHashMap heads = new LongIntHashMap();
+        int[] next = new int[n];
+        for (int i = n - 1; i >= 0; --i) {
+            if (slots[i] >= 0) {
+                next[i] = heads.put(fingerprint(digests, slots[i] * length, (slots[i] + 1) * length, sizes[i]), i);
+            }
+        }
+        int[] nextGroup = new int[n];
+        int[] member = new int[n];
+        int[] tail = new int[n];
+        long groups = 0;
+        long duplicates = 0;
+        long wasted = 0;
+        try {
+            for (int i = 0; i < n; ++i) {
+                if (slots[i] < 0 || heads.get(fingerprint(digests, slots[i] * length, (slots[i] + 1) * length, sizes[i])) != i) {
+                    continue;
+                }
+                int lastGroup = -1;
+                for (int j = i; j >= 0; j = next[j]) {
+                    member[j] = -1;
+                    int g = j == i ? -1 : i;
+                    while (g >= 0 && (sizes[g] != sizes[j] || !Arrays.equals(
+                            digests, slots[g] * length, (slots[g] + 1) * length,
+                            digests, slots[j] * length, (slots[j] + 1) * length))) {
+                        g = nextGroup[g];
+                    }
+                    if (g < 0) {
+                        tail[j] = j;
+                        nextGroup[j] = -1;
+                        if (lastGroup >= 0) {
+                            nextGroup[lastGroup] = j;
+                        }
+                        lastGroup = j;
+                    } else {
+                        member[tail[g]] = j;
+                        tail[g] = j;
+                    }
+                }
+                for (int first = i; first >= 0; first = nextGroup[first]) {
+                    if (member[first] < 0) {
+                        continue;
+                    }
+                    int size = 0;
+                    for (int j = first; j >= 0; j = member[j]) {
+                        ++size;
+                    }
+                    long groupWasted = sizes[first] * (size - 1);
+                    ++groups;
+                    duplicates += size - 1;
+                    wasted += groupWasted;
+                    output.text("# " + size + " files of " + sizes[first] + " bytes, " + groupWasted + " bytes wasted");
+                    output.newLine();
+                    for (int j = first; j >= 0; j = member[j]) {
+                        formatter.writeHex(output, digests, slots[j] * length);
+                        output.space();
+                        output.raw(names, start(j), ends[j] - start(j));
+                        output.newLine();
+                    }
+                    output.newLine();
+                }
+            }
+            output.text("# Total: " + groups + " groups, " + duplicates + " duplicate files, " + wasted + " bytes wasted");
+            output.newLine();
+        } catch (IOException e) {
+            throw new WalkIOException("Can't write to output file.", e);
+        }
+    }
+
+    /**
+     * Hashes files, which have the same size as another file, and returns their digests of {@code length} bytes.
+     * Digest of file {@code i} starts at {@code slots[i] * length}, slot is {@code -1}, if the file was not hashed.
+     */
+    private byte[] hashCandidates(Function<HashWriter, AbstractFileHasher> factory, int threads, int length, int[] slots) throws WalkException {
+        int n = count;
+        LongIntHashMap sizeCounts = new LongIntHashMap();
+        for (int i = 0; i < n; ++i) {
+            int prev = sizeCounts.get(sizes[i]);
+            sizeCounts.put(sizes[i], prev < 0 ? 1 : 2);
+        }
+        int[] candidates = new int[n];
+        int cnt = 0;
+        for (int i = 0; i < n; ++i) {
+            slots[i] = -1;
+            if (sizeCounts.get(sizes[i]) > 1) {
+                candidates[cnt++] = i;
+            }
+        }
+        byte[] digests = new byte[Math.multiplyExact(cnt, length)];
+        AtomicInteger position = new AtomicInteger();
+        int total = cnt;
+        Callable<Void> job = () -> {
+            AbstractFileHasher hasher = factory.apply(new HashWriter(OutputStream.nullOutputStream()));
+            int j;
+            while ((j = position.getAndIncrement()) < total) {
+                if (hasher.hash(path(candidates[j]))) {
+                    System.arraycopy(hasher.digestBytes(), 0, digests, j * length, length);
+                    slots[candidates[j]] = j;
+                }
+            }
+            return null;
+        };
+        if (threads <= 1) {
+            try {
+                job.call();
+            } catch (Exception e) {
+                throw new WalkException("Can't hash files.", e);
+            }
+            return digests;
+        }
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Void> result : workers.invokeAll(Collections.nCopies(threads, job))) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WalkException("Was interrupted while waiting for hashes.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException exception) {
+                throw exception;
+            } else if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new WalkException("Can't hash files.", e.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+        return digests;
+    }
+
+    private static long fingerprint(byte[] bytes, int from, int to, long size) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = from; i < to; ++i) {
+            hash = (hash ^ Byte.toUnsignedLong(bytes[i])) * 0x100000001B3L;
+        }
+        return (hash ^ size) * 0x100000001B3L;
+    }
+}
@@ -0,0 +1,10 @@
+package info.kgeorgiy.ja.nebabin.walk;
+
+/**
+ * Service interface for additional walk modes, loaded through {@link java.util.ServiceLoader}.
+ */
+public interface FileHasherProvider {
+    String mode();
+
+    AbstractFileHasher create(HashWriter output);
+}
@@ -1,40 +1,71 @@
 package info.kgeorgiy.ja.nebabin.walk;
 
-import java.io.BufferedWriter;
+import java.nio.ByteBuffer;
 
 public class FileJenkinsHasher extends AbstractFileHasher {
     private int hash;
 
-    public FileJenkinsHasher(BufferedWriter output) {
+    public FileJenkinsHasher(HashWriter output) {
         super(output);
         hash = 0;
     }
 
     @Override
     protected void update(byte[] info, int cnt) {
-        for (int i = 0; i < cnt; ++i) {
-            hash += Byte.toUnsignedInt(info[i]);
-            hash += hash << 10;
-            hash ^= hash >>> 6;
+        hash = update(hash, info, 0, cnt);
+    }
+
+    @Override
+    protected void update(ByteBuffer info) {
+        int from = info.position();
+        int to = info.limit();
+        if (info.hasArray()) {
+            hash = update(hash, info.array(), info.arrayOffset() + from, info.arrayOffset() + to);
+        } else {
+            hash = update(hash, info, from, to);
+        }
+        info.position(to);
+    }
+
+    private static int update(int hash, byte[] info, int from, int to) {
+        for (int i = from; i < to; ++i) {
+            hash = mix(hash, info[i]);
+        }
+        return hash;
+    }
+
+    private static int update(int hash, ByteBuffer info, int from, int to) {
+        for (int i = from; i < to; ++i) {
+            hash = mix(hash, info.get(i));
         }
+        return hash;
+    }
+
+    private static int mix(int hash, byte b) {
+        hash += Byte.toUnsignedInt(b);
+        hash += hash << 10;
+        return hash ^ (hash >>> 6);
+    }
+
+    @Override
+    protected void reset() {
+        hash = 0;
     }
 
     @Override
-    protected String defaultHash() {
-        return getHexString(0);
+    protected int digestLength() {
+        return Integer.BYTES;
     }
 
     @Override
-    protected String digest() {
+    protected void digest(byte[] out, int offset) {
         hash += hash << 3;
         hash ^= hash >>> 11;
         hash += hash << 15;
-        String res = getHexString(hash);
+        out[offset] = (byte) (hash >>> 24);
+        out[offset + 1] = (byte) (hash >>> 16);
+        out[offset + 2] = (byte) (hash >>> 8);
+        out[offset + 3] = (byte) hash;
         hash = 0;
-        return res;
-    }
-
-    private String getHexString(int num) {
-        return String.format("%08x", num);
     }
 }
@@ -0,0 +1,297 @@
+package info.kgeorgiy.ja.nebabin.walk;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * On-disk cache of file hashes, keyed by absolute path and validated by size, modification time, inode and mode.
+ * <p>
+ * File layout: a 16-byte header ({@code magic, count, mode length, reserved}),
+ * {@code count} fixed-width records sorted by unsigned UTF-8 bytes of path, and a string table,
+ * which starts with the hashing mode and contains path bytes immediately followed by raw digest bytes for every record.
+ * The file is memory-mapped on load, so lookups are binary searches over the mapping,
+ * a file with a record pointing out of the string table is ignored.
+ * {@link #save()} merges entries stored during the current run with entries of the loaded file,
+ * so entries of files, which were not walked, are kept.
+ */
+public class HashCache {
+    private static final AtomicLong TEMP_FILES = new AtomicLong();
+    private static final int MAGIC = 0x57484332;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 48;
+    private static final int OFFSET = 0;
+    private static final int PATH_LENGTH = 8;
+    private static final int HASH_LENGTH = 12;
+    private static final int SIZE = 16;
+    private static final int MTIME = 24;
+    private static final int INODE = 32;
+    private static final int MODE = 40;
+
+    private final Path file;
+    private final String mode;
+    private final ByteBuffer records;
+    private final ByteBuffer strings;
+    private final int count;
+    private final Queue<Entry> entries = new ConcurrentLinkedQueue<>();
+
+    private HashCache(Path file, String mode, ByteBuffer records, ByteBuffer strings, int count) {
+        this.file = file;
+        this.mode = mode;
+        this.records = records;
+        this.strings = strings;
+        this.count = count;
+    }
+
+    public static HashCache load(Path file, String mode) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                return empty(file, mode);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            int count = header.getInt(4);
+            int modeLength = header.getInt(8);
+            long stringsStart = HEADER_SIZE + (long) count * RECORD_SIZE;
+            if (header.getInt(0) != MAGIC || count < 0 || modeLength < 0 || stringsStart + modeLength > size
+                    || size - stringsStart > Integer.MAX_VALUE || stringsStart > Integer.MAX_VALUE) {
+                return empty(file, mode);
+            }
+            ByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, stringsStart - HEADER_SIZE);
+            ByteBuffer strings = channel.map(FileChannel.MapMode.READ_ONLY, stringsStart, size - stringsStart);
+            byte[] storedMode = new byte[modeLength];
+            strings.get(0, storedMode);
+            if (!mode.equals(new String(storedMode, StandardCharsets.UTF_8)) || !valid(records, count, modeLength, strings.limit())) {
+                return empty(file, mode);
+            }
+            return new HashCache(file, mode, records, strings, count);
+        } catch (NoSuchFileException e) {
+            return empty(file, mode);
+        }
+    }
+
+    private static boolean valid(ByteBuffer records, int count, int modeLength, int stringsLength) {
+        for (int base = 0; base < count * RECORD_SIZE; base += RECORD_SIZE) {
+            long offset = records.getLong(base + OFFSET);
+            int pathLength = records.getInt(base + PATH_LENGTH);
+            int hashLength = records.getInt(base + HASH_LENGTH);
+            if (offset < modeLength || pathLength < 0 || hashLength < 0
+                    || offset + pathLength + hashLength > stringsLength) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static HashCache empty(Path file, String mode) {
+        return new HashCache(file, mode, null, null, 0);
+    }
+
+    public Key key(Path path) {
+        try {
+            Path absolute = path.toAbsolutePath();
+            long size;
+            FileTime mtime;
+            long inode = 0;
+            int unixMode = 0;
+            try {
+                Map<String, Object> attrs = Files.readAttributes(absolute, "unix:size,lastModifiedTime,ino,mode");
+                size = (Long) attrs.get("size");
+                mtime = (FileTime) attrs.get("lastModifiedTime");
+                inode = (Long) attrs.get("ino");
+                unixMode = (Integer) attrs.get("mode");
+            } catch (UnsupportedOperationException | IllegalArgumentException e) {
+                BasicFileAttributes attrs = Files.readAttributes(absolute, BasicFileAttributes.class);
+                size = attrs.size();
+                mtime = attrs.lastModifiedTime();
+            }
+            return new Key(absolute.toString().getBytes(StandardCharsets.UTF_8), size,
+                    mtime.to(TimeUnit.NANOSECONDS), inode, unixMode);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    public boolean lookup(Key key, byte[] digest) {
+        int base = match(key, digest.length);
+        if (base < 0) {
+            return false;
+        }
+        strings.get((int) records.getLong(base + OFFSET) + key.path.length, digest);
+        return true;
+    }
+
+    public boolean contains(Key key, int digestLength) {
+        return match(key, digestLength) >= 0;
+    }
+
+    private int match(Key key, int digestLength) {
+        int ind = find(key.path);
+        if (ind < 0) {
+            return -1;
+        }
+        int base = ind * RECORD_SIZE;
+        if (records.getLong(base + SIZE) != key.size || records.getLong(base + MTIME) != key.mtime
+                || records.getLong(base + INODE) != key.inode || records.getInt(base + MODE) != key.mode
+                || records.getInt(base + HASH_LENGTH) != digestLength) {
+            return -1;
+        }
+        return base;
+    }
+
+    public void store(Key key, byte[] digest) {
+        entries.add(new Entry(key, digest.clone()));
+    }
+
+    private int find(byte[] path) {
+        int left = 0;
+        int right = count - 1;
+        while (left <= right) {
+            int mid = (left + right) >>> 1;
+            int cmp = compare(mid, path);
+            if (cmp < 0) {
+                left = mid + 1;
+            } else if (cmp > 0) {
+                right = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int compare(int ind, byte[] path) {
+        int base = ind * RECORD_SIZE;
+        int offset = (int) records.getLong(base + OFFSET);
+        int length = records.getInt(base + PATH_LENGTH);
+        int common = Math.min(length, path.length);
+        for (int i = 0; i < common; ++i) {
+            int cmp = Byte.compareUnsigned(strings.get(offset + i), path[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, path.length);
+    }
+
+    public void save() throws IOException {
+        List<Entry> sorted = new ArrayList<>(entries);
+        sorted.sort((a, b) -> Arrays.compareUnsigned(a.key.path, b.key.path));
+        List<Entry> unique = new ArrayList<>(sorted.size());
+        for (Entry entry : sorted) {
+            if (!unique.isEmpty() && Arrays.equals(unique.getLast().key.path, entry.key.path)) {
+                unique.set(unique.size() - 1, entry);
+            } else {
+                unique.add(entry);
+            }
+        }
+        entries.clear();
+        entries.addAll(unique);
+        int[] order = merge(unique);
+        byte[] modeBytes = mode.getBytes(StandardCharsets.UTF_8);
+        // Files.createTempFile would make the cache readable only by its owner, the counter separates saves in one process
+        Path tmp = file.resolveSibling(file.getFileName() + "." + ProcessHandle.current().pid() + "." + TEMP_FILES.incrementAndGet() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(order.length);
+                out.writeInt(modeBytes.length);
+                out.writeInt(0);
+                long offset = modeBytes.length;
+                for (int ind : order) {
+                    if (ind < 0) {
+                        Entry entry = unique.get(-ind - 1);
+                        Key key = entry.key;
+                        out.writeLong(offset);
+                        out.writeInt(key.path.length);
+                        out.writeInt(entry.hash.length);
+                        out.writeLong(key.size);
+                        out.writeLong(key.mtime);
+                        out.writeLong(key.inode);
+                        out.writeInt(key.mode);
+                        out.writeInt(0);
+                        offset += key.path.length + entry.hash.length;
+                    } else {
+                        int base = ind * RECORD_SIZE;
+                        out.writeLong(offset);
+                        for (int i = PATH_LENGTH; i < RECORD_SIZE; i += Integer.BYTES) {
+                            out.writeInt(records.getInt(base + i));
+                        }
+                        offset += records.getInt(base + PATH_LENGTH) + records.getInt(base + HASH_LENGTH);
+                    }
+                }
+                out.write(modeBytes);
+                byte[] buffer = new byte[0];
+                for (int ind : order) {
+                    if (ind < 0) {
+                        Entry entry = unique.get(-ind - 1);
+                        out.write(entry.key.path);
+                        out.write(entry.hash);
+                    } else {
+                        int base = ind * RECORD_SIZE;
+                        int length = records.getInt(base + PATH_LENGTH) + records.getInt(base + HASH_LENGTH);
+                        if (buffer.length < length) {
+                            buffer = new byte[length];
+                        }
+                        strings.get((int) records.getLong(base + OFFSET), buffer, 0, length);
+                        out.write(buffer, 0, length);
+                    }
+                }
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Returns order of records to write: index {@code i} of a loaded record or {@code -i - 1} of an entry in {@code unique},
+     * which replaces a loaded record with the same path.
+     */
+    private int[] merge(List<Entry> unique) {
+        int[] order = new int[count + unique.size()];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < count || j < unique.size()) {
+            int cmp = i == count ? 1 : j == unique.size() ? -1 : compare(i, unique.get(j).key.path);
+            if (cmp < 0) {
+                order[size++] = i++;
+            } else {
+                if (cmp == 0) {
+                    ++i;
+                }
+                order[size++] = -j - 1;
+                ++j;
+            }
+        }
+        return Arrays.copyOf(order, size);
+    }
+
+    public record Key(byte[] path, long size, long mtime, long inode, int mode) {}
+
+    private record Entry(Key key, byte[] hash) {}
+}
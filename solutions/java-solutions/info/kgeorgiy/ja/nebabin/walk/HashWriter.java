@@ -0,0 +1,184 @@
+package info.kgeorgiy.ja.nebabin.walk;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Writer of walk results, which encodes hex digits, UTF-8 text and big-endian binary fields straight into a reusable byte buffer.
+ * Nothing is allocated per line, the buffer is handed to the underlying stream only when it is full or flushed.
+ * It is not thread-safe, except that {@link #write(byte[])} of a whole block is atomic.
+ */
+public class HashWriter implements Closeable, Flushable {
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NEW_LINE = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private static final int DEFAULT_CAPACITY = 1 << 13;
+    private static final int IN_MEMORY_CAPACITY = 1 << 9;
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int size;
+
+    public HashWriter(OutputStream out, int capacity) {
+        this.out = out;
+        this.buffer = new byte[capacity];
+    }
+
+    public HashWriter(OutputStream out) {
+        this(out, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Returns writer for lines of a few paths, which are taken by {@link #take()}.
+     */
+    static HashWriter inMemory() {
+        return new HashWriter(new ByteArrayOutputStream(IN_MEMORY_CAPACITY), IN_MEMORY_CAPACITY);
+    }
+
+    byte[] take() throws IOException {
+        flush();
+        ByteArrayOutputStream memory = (ByteArrayOutputStream) out;
+        byte[] res = memory.toByteArray();
+        memory.reset();
+        return res;
+    }
+
+    private void ensure(int cnt) throws IOException {
+        if (buffer.length - size < cnt) {
+            flushBuffer();
+        }
+    }
+
+    public void hex(byte[] bytes, int offset, int length) throws IOException {
+        for (int i = offset; i < offset + length; ++i) {
+            ensure(2);
+            buffer[size++] = HEX[(bytes[i] >>> 4) & 0xF];
+            buffer[size++] = HEX[bytes[i] & 0xF];
+        }
+    }
+
+    public void space() throws IOException {
+        ensure(1);
+        buffer[size++] = ' ';
+    }
+
+    public void newLine() throws IOException {
+        ensure(NEW_LINE.length);
+        System.arraycopy(NEW_LINE, 0, buffer, size, NEW_LINE.length);
+        size += NEW_LINE.length;
+    }
+
+    public void raw(byte[] bytes, int offset, int length) throws IOException {
+        ensure(length);
+        if (length > buffer.length) {
+            out.write(bytes, offset, length);
+            return;
+        }
+        System.arraycopy(bytes, offset, buffer, size, length);
+        size += length;
+    }
+
+    public void rawInt(int value) throws IOException {
+        ensure(Integer.BYTES);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            buffer[size++] = (byte) (value >>> shift);
+        }
+    }
+
+    public void rawLong(long value) throws IOException {
+        ensure(Long.BYTES);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[size++] = (byte) (value >>> shift);
+        }
+    }
+
+    /**
+     * Returns amount of bytes, which {@link #text(String)} writes for {@code text}.
+     */
+    public static int utf8Length(String text) {
+        int length = text.length();
+        int result = 0;
+        for (int i = 0; i < length; ++i) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                result += 1;
+            } else if (c < 0x800) {
+                result += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                result += 4;
+                ++i;
+            } else if (Character.isSurrogate(c)) {
+                result += 1;
+            } else {
+                result += 3;
+            }
+        }
+        return result;
+    }
+
+    public void path(Path path) throws IOException {
+        text(path.toString());
+    }
+
+    public void text(String text) throws IOException {
+        int length = text.length();
+        for (int i = 0; i < length; ++i) {
+            char c = text.charAt(i);
+            ensure(4);
+            if (c < 0x80) {
+                buffer[size++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[size++] = (byte) (0xC0 | (c >> 6));
+                buffer[size++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, text.charAt(++i));
+                buffer[size++] = (byte) (0xF0 | (cp >> 18));
+                buffer[size++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buffer[size++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buffer[size++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buffer[size++] = '?';
+            } else {
+                buffer[size++] = (byte) (0xE0 | (c >> 12));
+                buffer[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[size++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    public synchronized void write(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.length - size) {
+            flushBuffer();
+            if (bytes.length > buffer.length) {
+                out.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    private void flushBuffer() throws IOException {
+        out.write(buffer, 0, size);
+        size = 0;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            out.close();
+        }
+    }
+}
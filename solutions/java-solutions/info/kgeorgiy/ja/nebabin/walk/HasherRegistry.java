@@ -0,0 +1,55 @@
+package info.kgeorgiy.ja.nebabin.walk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.function.Function;
+
+public final class HasherRegistry {
+    private static final String MODE_SEPARATOR = ",";
+    private static final Map<String, Function<HashWriter, AbstractFileHasher>> FACTORIES = createFactories();
+
+    private HasherRegistry() {
+    }
+
+    private static Map<String, Function<HashWriter, AbstractFileHasher>> createFactories() {
+        Map<String, Function<HashWriter, AbstractFileHasher>> factories = new LinkedHashMap<>();
+        factories.put("jenkins", FileJenkinsHasher::new);
+        factories.put("sha-1", ShaOneFileHasher::new);
+        factories.put("sha-1-tree", TreeShaFileHasher::new);
+        factories.put("sha-256", output -> new MessageDigestFileHasher(output, "SHA-256"));
+        factories.put("crc32c", CrcFileHasher::new);
+        factories.put("xxhash64", XxHashFileHasher::new);
+        for (FileHasherProvider provider : ServiceLoader.load(FileHasherProvider.class)) {
+            factories.putIfAbsent(provider.mode(), provider::create);
+        }
+        return Collections.unmodifiableMap(factories);
+    }
+
+    public static Set<String> modes() {
+        return FACTORIES.keySet();
+    }
+
+    public static Function<HashWriter, AbstractFileHasher> getFactory(String mode) throws WalkModeException {
+        if (mode.indexOf(MODE_SEPARATOR) >= 0) {
+            List<Function<HashWriter, AbstractFileHasher>> factories = new ArrayList<>();
+            for (String single : mode.split(MODE_SEPARATOR)) {
+                factories.add(getSingleFactory(single));
+            }
+            return output -> new MultiFileHasher(output, factories.stream().map(factory -> factory.apply(output)).toList());
+        }
+        return getSingleFactory(mode);
+    }
+
+    private static Function<HashWriter, AbstractFileHasher> getSingleFactory(String mode) throws WalkModeException {
+        Function<HashWriter, AbstractFileHasher> factory = FACTORIES.get(mode);
+        if (factory == null) {
+            throw new WalkModeException("Incorrect mode of hashing in walk. Supported modes: " + String.join(", ", modes()) + ".");
+        }
+        return factory;
+    }
+}
@@ -0,0 +1,76 @@
+package info.kgeorgiy.ja.nebabin.walk;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations in nanoseconds with power-of-two buckets.
+ */
+public class LatencyHistogram implements LatencyHistogramMXBean {
+    private static final int BUCKETS = Long.SIZE;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    void record(long nanos) {
+        nanos = Math.max(nanos, 0);
+        buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(nanos));
+        count.increment();
+        sum.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public long getMeanNanos() {
+        long cnt = count.sum();
+        return cnt == 0 ? 0 : sum.sum() / cnt;
+    }
+
+    @Override
+    public long getMedianNanos() {
+        return percentile(0.5);
+    }
+
+    @Override
+    public long getP99Nanos() {
+        return percentile(0.99);
+    }
+
+    @Override
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    @Override
+    public long[] getBuckets() {
+        long[] result = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; ++i) {
+            result[i] = buckets.get(i);
+        }
+        return result;
+    }
+
+    private long percentile(double fraction) {
+        long[] counts = getBuckets();
+        long total = 0;
+        for (long cnt : counts) {
+            total += cnt;
+        }
+        long rank = (long) Math.ceil(total * fraction);
+        for (int i = 0; i < BUCKETS; ++i) {
+            rank -= counts[i];
+            if (rank <= 0 && total > 0) {
+                return Math.min(getMaxNanos(), (1L << i) - 1);
+            }
+        }
+        return getMaxNanos();
+    }
+}
@@ -0,0 +1,21 @@
+package info.kgeorgiy.ja.nebabin.walk;
+
+/**
+ * Management view of {@link LatencyHistogram}. Percentiles are upper bounds of power-of-two buckets.
+ */
+public interface LatencyHistogramMXBean {
+    long getCount();
+
+    long getMeanNanos();
+
+    long getMedianNanos();
+
+    long getP99Nanos();
+
+    long getMaxNanos();
+
+    /**
+     * Returns amount of samples in every bucket, bucket {@code i} holds samples in {@code [2^(i-1), 2^i)} ns.
+     */
+    long[] getBuckets();
+}
@@ -0,0 +1,36 @@
+package info.kgeorgiy.ja.nebabin.walk;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.function.Function;
+
+/**
+ * Hasher, which returns output lines for one path instead of writing them.
+ */
+class LineHasher {
+    private final HashWriter writer = HashWriter.inMemory();
+    private final AbstractFileHasher hasher;
+
+    LineHasher(Function<HashWriter, AbstractFileHasher> factory) {
+        this.hasher = factory.apply(writer);
+    }
+
+    byte[] hash(Path file) {
+        try {
+            hasher.visitFile(file);
+            return writer.take();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    byte[] failed(Path file, IOException exc) {
+        try {
+            hasher.visitFileFailed(file, exc);
+            return writer.take();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package info.kgeorgiy.ja.nebabin.walk;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Source of input lines for a walk. Lines are split as {@link BufferedReader#readLine()} does.
+ */
+@FunctionalInterface
+public interface LineReader extends Closeable {
+    /**
+     * Returns next line without its terminator, or {@code null} at the end of input.
+     */
+    String readLine() throws IOException;
+
+    @Override
+    default void close() throws IOException {
+    }
+
+    /**
+     * Opens UTF-8 list of paths. Regular files are read through {@link MappedLineReader},
+     * other files, such as pipes, through {@link BufferedReader}.
+     */
+    static LineReader open(Path file) throws IOException {
+        if (Files.isRegularFile(file)) {
+            return MappedLineReader.open(file);
+        }
+        BufferedReader reader = Files.newBufferedReader(file);
+        return new LineReader() {
+            @Override
+            public String readLine() throws IOException {
+                return reader.readLine();
+            }
+
+            @Override
+            public void close() throws IOException {
+                reader.close();
+            }
+        };
+    }
+}
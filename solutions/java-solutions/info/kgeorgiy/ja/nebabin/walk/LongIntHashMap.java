@@ -0,0 +1,72 @@
+package info.kgeorgiy.ja.nebabin.walk;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from {@code long} to non-negative {@code int} with linear probing.
+ * Keeps no objects per entry, so it costs 12 bytes per slot regardless of size.
+ */
+class LongIntHashMap {
+    private static final int ABSENT = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    LongIntHashMap() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, ABSENT);
+    }
+
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int ind = (int) mix(key) & mask;
+        while (values[ind] != ABSENT && keys[ind] != key) {
+            ind = (ind + 1) & mask;
+        }
+        return ind;
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        return key ^ (key >>> 33);
+    }
+
+    int get(long key) {
+        return values[slot(key)];
+    }
+
+    /**
+     * Puts {@code value} for {@code key} and returns previous value or {@code -1} if there was none.
+     */
+    int put(long key, int value) {
+        int ind = slot(key);
+        int prev = values[ind];
+        keys[ind] = key;
+        values[ind] = value;
+        if (prev == ABSENT && ++size * 2 > keys.length) {
+            grow();
+        }
+        return prev;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(keys.length * 2);
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldValues[i] != ABSENT) {
+                int ind = slot(oldKeys[i]);
+                keys[ind] = oldKeys[i];
+                values[ind] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package info.kgeorgiy.ja.nebabin.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads UTF-8 lines from a file, which is memory-mapped by windows of {@value #WINDOW} bytes,
+ * so memory use does not depend on the size of the file.
+ * ASCII lines are copied into a {@code String} straight from the mapping,
+ * other lines are decoded through a reused decoder and buffers. Malformed input is reported as an error.
+ * Every line still becomes a {@code String}, as callers turn it into a {@link Path} and write it back.
+ */
+public class MappedLineReader implements LineReader {
+    private static final long WINDOW = 1 << 26;
+
+    private final FileChannel channel;
+    private final long size;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    private ByteBuffer window = ByteBuffer.allocate(0);
+    private long windowStart = 0;
+    private byte[] bytes = new byte[256];
+    private CharBuffer chars = CharBuffer.allocate(256);
+    private boolean skipLf = false;
+
+    private MappedLineReader(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+    }
+
+    public static MappedLineReader open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new MappedLineReader(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        int start = window.position();
+        int end = start;
+        boolean ascii = true;
+        while (true) {
+            if (end == window.limit()) {
+                if (windowStart + end >= size) {
+                    break;
+                }
+                remap(start, end);
+                end -= start;
+                start = 0;
+                continue;
+            }
+            byte b = window.get(end);
+            if (skipLf) {
+                skipLf = false;
+                if (b == '\n') {
+                    start = ++end;
+                    continue;
+                }
+            }
+            if (b == '\n' || b == '\r') {
+                skipLf = b == '\r';
+                window.position(end + 1);
+                return decode(start, end, ascii);
+            }
+            ascii &= b >= 0;
+            ++end;
+        }
+        window.position(end);
+        return start == end ? null : decode(start, end, ascii);
+    }
+
+    private void remap(int start, int end) throws IOException {
+        long from = windowStart + start;
+        long length = Math.min(size - from, Math.max(WINDOW, 2L * (end - start)));
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Line is too long.");
+        }
+        window = channel.map(FileChannel.MapMode.READ_ONLY, from, length);
+        windowStart = from;
+    }
+
+    private String decode(int start, int end, boolean ascii) throws CharacterCodingException {
+        int length = end - start;
+        if (ascii) {
+            if (bytes.length < length) {
+                bytes = new byte[Math.max(length, 2 * bytes.length)];
+            }
+            window.get(start, bytes, 0, length);
+            return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+        }
+        if (chars.capacity() < length) {
+            chars = CharBuffer.allocate(Math.max(length, 2 * chars.capacity()));
+        }
+        chars.clear();
+        decoder.reset();
+        ByteBuffer line = window.slice(start, length);
+        CoderResult result = decoder.decode(line, chars, true);
+        if (!result.isUnderflow()) {
+            result.throwException();
+        }
+        result = decoder.flush(chars);
+        if (!result.isUnderflow()) {
+            result.throwException();
+        }
+        return chars.flip().toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
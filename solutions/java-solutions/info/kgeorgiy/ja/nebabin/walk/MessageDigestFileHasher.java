@@ -0,0 +1,48 @@
+package info.kgeorgiy.ja.nebabin.walk;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public class MessageDigestFileHasher extends AbstractFileHasher {
+    private final MessageDigest md;
+
+    public MessageDigestFileHasher(HashWriter output, String algorithm) {
+        super(output);
+        try {
+            md = MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Digest algorithm " + algorithm + " is unavailable.", e);
+        }
+    }
+
+    @Override
+    protected void update(byte[] info, int cnt) {
+        md.update(info, 0, cnt);
+    }
+
+    @Override
+    protected void update(ByteBuffer info) {
+        md.update(info);
+    }
+
+    @Override
+    protected void reset() {
+        md.reset();
+    }
+
+    @Override
+    protected int digestLength() {
+        return md.getDigestLength();
+    }
+
+    @Override
+    protected void digest(byte[] out, int offset) {
+        try {
+            md.digest(out, offset, md.getDigestLength());
+        } catch (DigestException e) {
+            throw new IllegalStateException("Digest buffer is too small.", e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package info.kgeorgiy.ja.nebabin.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Computes several digests in one pass over each file. Digests are written as space-separated columns.
+ */
+public class MultiFileHasher extends AbstractFileHasher {
+    private final List<AbstractFileHasher> hashers;
+
+    public MultiFileHasher(HashWriter output, List<AbstractFileHasher> hashers) {
+        super(output);
+        this.hashers = List.copyOf(hashers);
+    }
+
+    @Override
+    protected void update(ByteBuffer info) {
+        for (AbstractFileHasher hasher : hashers) {
+            hasher.update(info.duplicate());
+        }
+        info.position(info.limit());
+    }
+
+    @Override
+    protected void updateMapped(ByteBuffer info) {
+        for (AbstractFileHasher hasher : hashers) {
+            hasher.updateMapped(info.duplicate());
+        }
+        info.position(info.limit());
+    }
+
+    @Override
+    protected void reset() {
+        hashers.forEach(AbstractFileHasher::reset);
+    }
+
+    @Override
+    protected int digestLength() {
+        return hashers.stream().mapToInt(AbstractFileHasher::digestLength).sum();
+    }
+
+    @Override
+    protected void digest(byte[] out, int offset) {
+        for (AbstractFileHasher hasher : hashers) {
+            hasher.digest(out, offset);
+            offset += hasher.digestLength();
+        }
+    }
+
+    @Override
+    protected void writeHex(HashWriter out, byte[] digest, int offset) throws IOException {
+        int start = offset;
+        for (AbstractFileHasher hasher : hashers) {
+            if (offset > start) {
+                out.space();
+            }
+            out.hex(digest, offset, hasher.digestLength());
+            offset += hasher.digestLength();
+        }
+    }
+}
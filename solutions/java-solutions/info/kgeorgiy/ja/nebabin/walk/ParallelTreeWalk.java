@@ -0,0 +1,108 @@
+package info.kgeorgiy.ja.nebabin.walk;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+/**
+ * Fork/join replacement of {@link Files#walkFileTree(Path, java.nio.file.FileVisitor)} for hashing.
+ * Every directory listing and every file is a separate task in the pool,
+ * lines are written through {@link TreeOutput}. A walk, which is not recursive, hashes every root as a file.
+ */
+class ParallelTreeWalk {
+    private final ForkJoinPool pool;
+    private final boolean recursive;
+    private final ThreadLocal<LineHasher> hashers;
+
+    ParallelTreeWalk(Function<HashWriter, AbstractFileHasher> factory, ForkJoinPool pool, boolean recursive) {
+        this.pool = pool;
+        this.recursive = recursive;
+        this.hashers = ThreadLocal.withInitial(() -> new LineHasher(factory));
+    }
+
+    /**
+     * Walks {@code root} writing its lines to {@code entry} and waits for the walk to finish.
+     */
+    void walk(Path root, TreeOutput.Entry entry) throws IOException {
+        try {
+            pool.invoke(new EntryTask(root, entry));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Starts walk of {@code root} writing its lines to {@code entry}.
+     */
+    Future<Void> submit(Path root, TreeOutput.Entry entry) {
+        return pool.submit(new EntryTask(root, entry));
+    }
+
+    @SuppressWarnings("serial")
+    private class EntryTask extends RecursiveAction {
+        private final Path path;
+        private final TreeOutput.Entry entry;
+
+        private EntryTask(Path path, TreeOutput.Entry entry) {
+            this.path = path;
+            this.entry = entry;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                visit();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void visit() throws IOException {
+            LineHasher hasher = hashers.get();
+            if (!recursive) {
+                entry.write(hasher.hash(path));
+                return;
+            }
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException e) {
+                entry.write(hasher.failed(path, e));
+                return;
+            }
+            if (!attrs.isDirectory()) {
+                entry.write(hasher.hash(path));
+                return;
+            }
+            List<Path> paths = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(path)) {
+                for (Path child : entries) {
+                    paths.add(child);
+                }
+            } catch (DirectoryIteratorException e) {
+                throw e.getCause();
+            } catch (IOException e) {
+                entry.write(hasher.failed(path, e));
+                return;
+            }
+            List<TreeOutput.Entry> entries = entry.expand(paths.size());
+            List<EntryTask> children = new ArrayList<>(paths.size());
+            for (int i = 0; i < paths.size(); ++i) {
+                children.add(new EntryTask(paths.get(i), entries.get(i)));
+            }
+            ForkJoinTask.invokeAll(children);
+        }
+    }
+}
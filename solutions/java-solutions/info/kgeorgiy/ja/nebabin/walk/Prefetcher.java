@@ -0,0 +1,241 @@
+package info.kgeorgiy.ja.nebabin.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Read-ahead stage for sequential walk: keeps up to {@code files} regular files and {@code bytes} bytes
+ * of their contents read through {@link AsynchronousFileChannel} ahead of the hasher,
+ * so reading of the next files overlaps with hashing of the current one.
+ * Files, which are larger than the whole budget, cached or can't be read, are left to the hasher.
+ * Contents are read into direct buffers, which are reused for next files.
+ */
+class Prefetcher {
+    private final LineReader input;
+    private final AbstractFileHasher hasher;
+    private final int files;
+    private final long bytes;
+    private final Queue<Entry> queue = new ArrayDeque<>();
+    private final BufferPool buffers;
+    private Entry held = null;
+    private Entry returned = null;
+    private long inFlight = 0;
+    private boolean eof = false;
+
+    Prefetcher(LineReader input, AbstractFileHasher hasher, int files, long bytes) {
+        this.input = input;
+        this.hasher = hasher;
+        this.files = files;
+        this.bytes = Math.min(bytes, Integer.MAX_VALUE - 1);
+        this.buffers = new BufferPool(this.bytes);
+    }
+
+    /**
+     * Returns next input line together with its prefetched contents, or {@code null} at the end of input.
+     * Contents of the entry returned before are reused, so they must not be accessed after this call.
+     */
+    Entry next() throws IOException {
+        if (returned != null) {
+            returned.release(buffers);
+            returned = null;
+        }
+        fill();
+        Entry entry = queue.poll();
+        if (entry != null) {
+            inFlight -= entry.size;
+        }
+        return returned = entry;
+    }
+
+    private void fill() throws IOException {
+        while (queue.size() < files) {
+            Entry entry = held;
+            held = null;
+            if (entry == null) {
+                String line = eof ? null : input.readLine();
+                if (line == null) {
+                    eof = true;
+                    return;
+                }
+                entry = open(line);
+            }
+            if (entry.size > 0 && inFlight + entry.size > bytes && !queue.isEmpty()) {
+                held = entry;
+                return;
+            }
+            entry.start(buffers);
+            inFlight += entry.size;
+            queue.add(entry);
+        }
+    }
+
+    private Entry open(String line) {
+        Path path;
+        try {
+            path = Path.of(line);
+        } catch (InvalidPathException e) {
+            return new Entry(line, null, null, 0, false);
+        }
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attrs.isRegularFile() || attrs.size() > bytes) {
+                return new Entry(line, path, null, 0, false);
+            }
+            HashCache.Key key = hasher.cacheKey(path);
+            if (hasher.isCached(key)) {
+                return new Entry(line, path, null, 0, false);
+            }
+            return new Entry(line, path, key, attrs.size(), true);
+        } catch (IOException e) {
+            return new Entry(line, path, null, 0, false);
+        }
+    }
+
+    static class Entry {
+        private final String input;
+        private final Path path;
+        private final HashCache.Key key;
+        private final long size;
+        private final boolean readable;
+        private CompletableFuture<ByteBuffer> contents = null;
+        private ByteBuffer buffer = null;
+
+        private Entry(String input, Path path, HashCache.Key key, long size, boolean readable) {
+            this.input = input;
+            this.path = path;
+            this.key = key;
+            this.size = size;
+            this.readable = readable;
+        }
+
+        String input() {
+            return input;
+        }
+
+        Path path() {
+            return path;
+        }
+
+        HashCache.Key key() {
+            return key;
+        }
+
+        /**
+         * Returns whole contents of the file, or {@code null}, if it was not prefetched.
+         */
+        ByteBuffer contents() {
+            return contents == null ? null : contents.join();
+        }
+
+        private void start(BufferPool buffers) {
+            if (!readable) {
+                return;
+            }
+            contents = new CompletableFuture<>();
+            try {
+                AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ);
+                // One extra byte detects files, which have grown since their size was taken
+                buffer = buffers.acquire((int) size + 1);
+                read(channel, buffer);
+            } catch (IOException | RuntimeException e) {
+                contents.complete(null);
+            }
+        }
+
+        private void release(BufferPool buffers) {
+            // Contents are complete, when the hasher has taken them, otherwise a read may still write to the buffer
+            if (buffer != null && contents.isDone()) {
+                buffers.release(buffer);
+            }
+            buffer = null;
+        }
+
+        private void read(AsynchronousFileChannel channel, ByteBuffer buffer) {
+            channel.read(buffer, buffer.position(), null, new CompletionHandler<>() {
+                @Override
+                public void completed(Integer cnt, Object attachment) {
+                    try {
+                        if (cnt >= 0 && buffer.hasRemaining()) {
+                            read(channel, buffer);
+                        } else {
+                            finish(channel, buffer.hasRemaining() ? buffer.flip() : null);
+                        }
+                    } catch (Throwable e) {
+                        // Read can't be issued again, for example, when the channel is closed
+                        finish(channel, null);
+                    }
+                }
+
+                @Override
+                public void failed(Throwable exc, Object attachment) {
+                    finish(channel, null);
+                }
+            });
+        }
+
+        private void finish(AsynchronousFileChannel channel, ByteBuffer result) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            contents.complete(result);
+        }
+    }
+
+    /**
+     * Direct buffers of power of two capacities, free buffers take at most {@code limit} bytes.
+     */
+    private static class BufferPool {
+        private static final int MIN_SHIFT = 12;
+        private static final int MAX_SHIFT = 30;
+
+        private final List<Queue<ByteBuffer>> free = new ArrayList<>();
+        private final long limit;
+        private long size = 0;
+
+        BufferPool(long limit) {
+            this.limit = limit;
+            for (int shift = 0; shift <= MAX_SHIFT; ++shift) {
+                free.add(new ArrayDeque<>());
+            }
+        }
+
+        /**
+         * Returns cleared buffer with exactly {@code capacity} bytes remaining.
+         */
+        ByteBuffer acquire(int capacity) {
+            int shift = Math.max(MIN_SHIFT, Integer.SIZE - Integer.numberOfLeadingZeros(capacity - 1));
+            if (shift > MAX_SHIFT) {
+                return ByteBuffer.allocateDirect(capacity);
+            }
+            ByteBuffer buffer = free.get(shift).poll();
+            if (buffer == null) {
+                buffer = ByteBuffer.allocateDirect(1 << shift);
+            } else {
+                size -= buffer.capacity();
+            }
+            return buffer.clear().limit(capacity);
+        }
+
+        void release(ByteBuffer buffer) {
+            int shift = Integer.numberOfTrailingZeros(buffer.capacity());
+            if (buffer.capacity() != 1 << shift || shift > MAX_SHIFT || size + buffer.capacity() > limit) {
+                return;
+            }
+            size += buffer.capacity();
+            free.get(shift).add(buffer);
+        }
+    }
+}
@@ -1,8 +1,13 @@
 package info.kgeorgiy.ja.nebabin.walk;
 
 import java.io.IOException;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.function.Function;
 
 public class RecursiveWalk extends AbstractWalk {
     @Override
@@ -10,6 +15,51 @@ public class RecursiveWalk extends AbstractWalk {
         Files.walkFileTree(path, hasher);
     }
 
+    @Override
+    protected boolean isRecursive() {
+        return true;
+    }
+
+    @Override
+    protected void watchRoot(TreeWatcher watcher, Path root) throws IOException {
+        if (Files.isDirectory(root)) {
+            watcher.registerTree(root);
+        } else {
+            watcher.registerFile(root);
+        }
+    }
+
+    @Override
+    protected void reportDuplicates(LineReader pathsFile, HashWriter output, Function<HashWriter, AbstractFileHasher> factory, WalkSettings settings) throws WalkException {
+        DuplicateReport report = new DuplicateReport();
+        SimpleFileVisitor<Path> collector = new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    report.add(file, attrs.size());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+        };
+        try {
+            String curInput;
+            while ((curInput = pathsFile.readLine()) != null) {
+                try {
+                    Files.walkFileTree(Path.of(curInput), collector);
+                } catch (InvalidPathException ignored) {
+                }
+            }
+        } catch (IOException e) {
+            throw new WalkIOException("Can't read from input file.", e);
+        }
+        report.write(output, factory, settings.getThreads());
+    }
+
     public static void main(String[] args) {
         walkBase(args, new RecursiveWalk());
     }
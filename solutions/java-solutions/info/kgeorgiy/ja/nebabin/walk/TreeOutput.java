@@ -0,0 +1,150 @@
+package info.kgeorgiy.ja.nebabin.walk;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Output of a tree walk, which visits entries in any order.
+ * In ordered mode lines are written in the same order, as {@link Files#walkFileTree(Path, java.nio.file.FileVisitor)}
+ * visits entries: entries form a tree of linked nodes, and lines of an entry are written as soon as
+ * all entries before it are written, so only entries finished ahead of the first unfinished one are kept.
+ * Roots follow each other in the order, in which they are added.
+ * Lines are written by one thread at a time, other threads only leave their lines to it.
+ * Otherwise every line is written as soon as it is ready.
+ */
+class TreeOutput {
+    private final AbstractFileHasher output;
+    private final boolean ordered;
+    private Entry cursor = null;
+    private Entry last = null;
+    private boolean writing = false;
+
+    TreeOutput(AbstractFileHasher output, boolean ordered) {
+        this.output = output;
+        this.ordered = ordered;
+    }
+
+    /**
+     * Returns entry of a new root, which is written after all roots added before it.
+     */
+    synchronized Entry root() {
+        Entry root = new Entry(null);
+        if (ordered) {
+            if (last != null) {
+                last.next = root;
+            }
+            last = root;
+            // Cursor is null, when all entries added so far are written
+            if (cursor == null) {
+                cursor = root;
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Writes lines of ready entries at the cursor, unless another thread does it.
+     */
+    private void drain() throws IOException {
+        synchronized (this) {
+            if (writing) {
+                return;
+            }
+            writing = true;
+        }
+        try {
+            byte[] lines;
+            while ((lines = next()) != null) {
+                output.writeLines(lines);
+            }
+        } catch (Throwable e) {
+            synchronized (this) {
+                writing = false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Moves cursor past the next ready entry with lines and returns them,
+     * or stops writing and returns {@code null}, if the entry at the cursor is not ready.
+     */
+    private synchronized byte[] next() {
+        while (cursor != null && cursor.ready) {
+            Entry entry = cursor;
+            if (entry.first != null) {
+                cursor = entry.first;
+                entry.first = null;
+                continue;
+            }
+            cursor = entry.successor();
+            if (entry.lines != null) {
+                byte[] lines = entry.lines;
+                entry.lines = null;
+                return lines;
+            }
+        }
+        writing = false;
+        return null;
+    }
+
+    final class Entry {
+        private final Entry parent;
+        private Entry next;
+        private Entry first;
+        private byte[] lines;
+        private boolean ready = false;
+
+        private Entry(Entry parent) {
+            this.parent = parent;
+        }
+
+        /**
+         * Writes lines of a file, or of a directory, which can't be listed.
+         */
+        void write(byte[] lines) throws IOException {
+            if (!ordered) {
+                output.writeLines(lines);
+                return;
+            }
+            synchronized (TreeOutput.this) {
+                this.lines = lines;
+                ready = true;
+            }
+            drain();
+        }
+
+        /**
+         * Replaces directory with {@code count} entries of its children and returns them in order.
+         */
+        List<Entry> expand(int count) throws IOException {
+            List<Entry> children = new ArrayList<>(count);
+            for (int i = 0; i < count; ++i) {
+                children.add(new Entry(this));
+            }
+            if (!ordered) {
+                return children;
+            }
+            for (int i = 0; i + 1 < count; ++i) {
+                children.get(i).next = children.get(i + 1);
+            }
+            synchronized (TreeOutput.this) {
+                first = children.isEmpty() ? null : children.getFirst();
+                ready = true;
+            }
+            drain();
+            return children;
+        }
+
+        private Entry successor() {
+            Entry entry = this;
+            while (entry != null && entry.next == null) {
+                entry = entry.parent;
+            }
+            return entry == null ? null : entry.next;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package info.kgeorgiy.ja.nebabin.walk;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * SHA-1 tree hash, which hashes chunks of a file in parallel.
+ * <p>
+ * The file is split into {@value #CHUNK}-byte chunks, the last one may be shorter, an empty file is one empty chunk.
+ * Leaf digest is {@code SHA-1(0x00 || chunk)}, inner node digest is {@code SHA-1(0x01 || left || right)}.
+ * Levels are built by pairing adjacent nodes from left to right, an odd last node is carried to the next level as is.
+ * The digest is the root of this tree. Leaves are hashed in the common {@link ForkJoinPool},
+ * a file of a single chunk is hashed in the calling thread.
+ * <p>
+ * Data, which is not memory-mapped, is gathered in a buffer, which grows up to a chunk and is reused between files,
+ * until it is handed over to the pool as a full chunk.
+ */
+public class TreeShaFileHasher extends AbstractFileHasher {
+    private static final int CHUNK = 1 << 22;
+    private static final int INITIAL_BUFFER = 1 << 16;
+    private static final byte LEAF = 0;
+    private static final byte NODE = 1;
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(TreeShaFileHasher::newDigest);
+
+    private final List<CompletableFuture<byte[]>> leaves = new ArrayList<>();
+    private ByteBuffer pending = null;
+
+    public TreeShaFileHasher(HashWriter output) {
+        super(output);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is unavailable.", e);
+        }
+    }
+
+    @Override
+    protected void updateMapped(ByteBuffer info) {
+        while ((pending == null || pending.position() == 0) && info.remaining() >= CHUNK) {
+            submit(info.slice(info.position(), CHUNK));
+            info.position(info.position() + CHUNK);
+        }
+        update(info);
+    }
+
+    @Override
+    protected void update(ByteBuffer info) {
+        while (info.hasRemaining()) {
+            if (pending == null) {
+                pending = ByteBuffer.allocate(leaves.isEmpty() ? Math.min(Math.max(INITIAL_BUFFER, info.remaining()), CHUNK) : CHUNK);
+            } else if (!pending.hasRemaining()) {
+                pending = ByteBuffer.allocate(Math.min(2 * pending.capacity(), CHUNK)).put(pending.flip());
+            }
+            int cnt = Math.min(pending.remaining(), info.remaining());
+            pending.put(info.slice(info.position(), cnt));
+            info.position(info.position() + cnt);
+            if (pending.position() == CHUNK) {
+                submit(pending.flip());
+                pending = null;
+            }
+        }
+    }
+
+    private void submit(ByteBuffer chunk) {
+        leaves.add(CompletableFuture.supplyAsync(() -> leaf(chunk), ForkJoinPool.commonPool()));
+    }
+
+    private static byte[] leaf(ByteBuffer chunk) {
+        MessageDigest md = DIGESTS.get();
+        md.update(LEAF);
+        md.update(chunk);
+        return md.digest();
+    }
+
+    @Override
+    protected void reset() {
+        leaves.clear();
+        if (pending != null) {
+            pending.clear();
+        }
+    }
+
+    @Override
+    protected int digestLength() {
+        return 20;
+    }
+
+    @Override
+    protected void digest(byte[] out, int offset) {
+        if (leaves.isEmpty()) {
+            byte[] root = leaf(pending == null ? ByteBuffer.allocate(0) : pending.flip());
+            reset();
+            System.arraycopy(root, 0, out, offset, digestLength());
+            return;
+        }
+        if (pending != null && pending.position() > 0) {
+            submit(pending.flip());
+            pending = null;
+        }
+        List<byte[]> level = new ArrayList<>(leaves.size());
+        for (CompletableFuture<byte[]> leaf : leaves) {
+            level.add(leaf.join());
+        }
+        reset();
+        MessageDigest md = DIGESTS.get();
+        while (level.size() > 1) {
+            List<byte[]> next = new ArrayList<>((level.size() + 1) / 2);
+            for (int i = 0; i + 1 < level.size(); i += 2) {
+                md.update(NODE);
+                md.update(level.get(i));
+                md.update(level.get(i + 1));
+                next.add(md.digest());
+            }
+            if (level.size() % 2 == 1) {
+                next.add(level.getLast());
+            }
+            level = next;
+        }
+        System.arraycopy(level.getFirst(), 0, out, offset, digestLength());
+    }
+}
@@ -0,0 +1,158 @@
+package info.kgeorgiy.ja.nebabin.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches walked files and trees for created and modified entries through {@link WatchService}.
+ * Events are collected until there are none for {@value #QUIET_MILLIS} ms and then handled as one batch,
+ * where every file is handled once, even if it is reached by several events or watched roots.
+ * Paths are handled in the same form, as roots were given.
+ */
+public class TreeWatcher implements Closeable {
+    private static final long QUIET_MILLIS = 200;
+
+    private final WatchService service;
+    private final Map<WatchKey, Path> dirs = new HashMap<>();
+    private final Set<WatchKey> recursive = new HashSet<>();
+    private final Map<Path, Path> files = new HashMap<>();
+    private final Set<Path> roots = new LinkedHashSet<>();
+
+    TreeWatcher() throws IOException {
+        service = FileSystems.getDefault().newWatchService();
+    }
+
+    public void registerTree(Path root) throws IOException {
+        roots.add(root);
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                recursive.add(register(dir));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    public void registerFile(Path file) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) {
+            register(dir);
+            files.putIfAbsent(file.toAbsolutePath().normalize(), file);
+        }
+    }
+
+    private WatchKey register(Path dir) throws IOException {
+        WatchKey key = dir.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        dirs.putIfAbsent(key, dir);
+        return key;
+    }
+
+    /**
+     * Handles batches of changes until the current thread is interrupted or nothing is left to watch.
+     * On event overflow all watched roots are handled again.
+     */
+    void run(PathHandler handler, BatchListener listener) throws IOException {
+        try {
+            while (!dirs.isEmpty()) {
+                Map<Path, Path> changed = new LinkedHashMap<>();
+                WatchKey key = service.take();
+                while (key != null) {
+                    collect(key, changed);
+                    key = service.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                for (Map.Entry<Path, Path> path : changed.entrySet()) {
+                    if (!coveredByParent(path.getKey(), changed)) {
+                        handler.handle(path.getValue());
+                    }
+                }
+                listener.batchDone();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException ignored) {
+        }
+    }
+
+    private static boolean coveredByParent(Path path, Map<Path, Path> changed) {
+        for (Path parent = path.getParent(); parent != null; parent = parent.getParent()) {
+            if (changed.containsKey(parent)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void collect(WatchKey key, Map<Path, Path> changed) throws IOException {
+        Path dir = dirs.get(key);
+        boolean tree = recursive.contains(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                roots.forEach(root -> add(changed, root));
+                files.values().forEach(file -> add(changed, file));
+                continue;
+            }
+            Path path = dir.resolve((Path) event.context());
+            if (tree) {
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    registerTree(path);
+                    roots.remove(path);
+                    add(changed, path);
+                } else if (!Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    add(changed, path);
+                }
+            } else {
+                Path file = files.get(path.toAbsolutePath().normalize());
+                if (file != null) {
+                    add(changed, file);
+                }
+            }
+        }
+        if (!key.reset()) {
+            dirs.remove(key);
+            recursive.remove(key);
+        }
+    }
+
+    private static void add(Map<Path, Path> changed, Path path) {
+        changed.putIfAbsent(path.toAbsolutePath().normalize(), path);
+    }
+
+    @Override
+    public void close() throws IOException {
+        service.close();
+    }
+
+    @FunctionalInterface
+    interface PathHandler {
+        void handle(Path path) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface BatchListener {
+        void batchDone() throws IOException;
+    }
+}
@@ -0,0 +1,119 @@
+package info.kgeorgiy.ja.nebabin.walk;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Tree walk in virtual threads, for file systems, where blocking metadata operations dominate.
+ * A fixed number of virtual threads take entries from a shared deque, so at most as many blocking operations
+ * are in flight. Children of a directory are put at the head of the deque, so the walk goes depth first,
+ * and new roots at its tail. Nobody waits for children, a root is done, when it has no pending entries.
+ * Lines are written through {@link TreeOutput}. A walk, which is not recursive, hashes every root as a file.
+ */
+class VirtualTreeWalk implements AutoCloseable {
+    private final BlockingDeque<Task> tasks = new LinkedBlockingDeque<>();
+    private final Function<HashWriter, AbstractFileHasher> factory;
+    private final boolean recursive;
+    private final List<Thread> workers;
+
+    VirtualTreeWalk(Function<HashWriter, AbstractFileHasher> factory, int threads, boolean recursive) {
+        this.factory = factory;
+        this.recursive = recursive;
+        this.workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; ++i) {
+            workers.add(Thread.ofVirtual().start(this::work));
+        }
+    }
+
+    /**
+     * Starts walk of {@code root} writing its lines to {@code entry}.
+     */
+    Future<Void> submit(Path root, TreeOutput.Entry entry) {
+        Root state = new Root();
+        tasks.addLast(new Task(root, entry, state));
+        return state.done;
+    }
+
+    private void work() {
+        LineHasher hasher = new LineHasher(factory);
+        try {
+            while (true) {
+                Task task = tasks.takeFirst();
+                if (!task.root.done.isDone()) {
+                    try {
+                        visit(task, hasher);
+                    } catch (Throwable e) {
+                        task.root.done.completeExceptionally(e);
+                    }
+                }
+                if (task.root.pending.decrementAndGet() == 0) {
+                    task.root.done.complete(null);
+                }
+            }
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private void visit(Task task, LineHasher hasher) throws IOException {
+        Path path = task.path;
+        if (!recursive) {
+            task.entry.write(hasher.hash(path));
+            return;
+        }
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            task.entry.write(hasher.failed(path, e));
+            return;
+        }
+        if (!attrs.isDirectory()) {
+            task.entry.write(hasher.hash(path));
+            return;
+        }
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+            for (Path child : stream) {
+                paths.add(child);
+            }
+        } catch (DirectoryIteratorException e) {
+            throw e.getCause();
+        } catch (IOException e) {
+            task.entry.write(hasher.failed(path, e));
+            return;
+        }
+        List<TreeOutput.Entry> entries = task.entry.expand(paths.size());
+        task.root.pending.addAndGet(paths.size());
+        for (int i = paths.size() - 1; i >= 0; --i) {
+            tasks.addFirst(new Task(paths.get(i), entries.get(i), task.root));
+        }
+    }
+
+    /**
+     * Stops the threads, entries, which are not visited yet, are dropped.
+     */
+    @Override
+    public void close() {
+        workers.forEach(Thread::interrupt);
+    }
+
+    private static class Root {
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private final AtomicInteger pending = new AtomicInteger(1);
+    }
+
+    private record Task(Path path, TreeOutput.Entry entry, Root root) {}
+}
@@ -0,0 +1,164 @@
+package info.kgeorgiy.ja.nebabin.walk;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of a walk, shared by all its hashers.
+ * <p>
+ * Every hashed file is split into open time, read time and hash time.
+ * Contents of memory-mapped files are paged in while they are hashed, so their read time goes to hash time.
+ * Prefetched files have hash time only. Errors are paths, which got the zero hash.
+ */
+public class WalkMetrics implements WalkMetricsMXBean, Closeable {
+    private static final String DOMAIN = "info.kgeorgiy.ja.nebabin.walk";
+
+    private final LongAdder files = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LatencyHistogram open = new LatencyHistogram();
+    private final LatencyHistogram read = new LatencyHistogram();
+    private final LatencyHistogram hash = new LatencyHistogram();
+    private final long start = System.nanoTime();
+    private final List<ObjectName> registered = new ArrayList<>();
+    private ScheduledExecutorService progress = null;
+    private PrintStream progressOutput = null;
+
+    void file(long size, long openNanos, long readNanos, long hashNanos) {
+        files.increment();
+        bytes.add(size);
+        if (openNanos >= 0) {
+            open.record(openNanos);
+            read.record(readNanos);
+        }
+        hash.record(hashNanos);
+    }
+
+    void cacheHit() {
+        files.increment();
+        cacheHits.increment();
+    }
+
+    void error() {
+        errors.increment();
+    }
+
+    public LatencyHistogram getOpen() {
+        return open;
+    }
+
+    public LatencyHistogram getRead() {
+        return read;
+    }
+
+    public LatencyHistogram getHash() {
+        return hash;
+    }
+
+    @Override
+    public long getFiles() {
+        return files.sum();
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @Override
+    public double getFilesPerSecond() {
+        return perSecond(getFiles());
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return perSecond(getBytes());
+    }
+
+    private double perSecond(long value) {
+        long elapsed = System.nanoTime() - start;
+        return elapsed <= 0 ? 0 : value * 1e9 / elapsed;
+    }
+
+    /**
+     * Registers these metrics and histograms in the platform MBean server under {@value #DOMAIN} domain.
+     */
+    public void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        String id = ProcessHandle.current().pid() + "-" + System.identityHashCode(this);
+        register(server, this, id, null);
+        register(server, open, id, "open");
+        register(server, read, id, "read");
+        register(server, hash, id, "hash");
+    }
+
+    private void register(MBeanServer server, Object bean, String id, String name) throws JMException {
+        ObjectName objectName = new ObjectName(DOMAIN + ":type=WalkMetrics,walk=" + id + (name == null ? "" : ",name=" + name));
+        server.registerMBean(bean, objectName);
+        registered.add(objectName);
+    }
+
+    /**
+     * Prints a progress line to {@code out} every {@code periodMillis} ms and once more on {@link #close()}.
+     */
+    public void startProgress(PrintStream out, long periodMillis) {
+        progressOutput = out;
+        progress = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "walk-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        progress.scheduleAtFixedRate(this::printProgress, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void printProgress() {
+        progressOutput.println(String.format(Locale.ROOT,
+                "%d files (%d cached), %.1f MiB, %d errors in %.1f s: %.1f files/s, %.1f MiB/s",
+                getFiles(), getCacheHits(), getBytes() / (double) (1 << 20), getErrors(), getElapsedMillis() / 1e3,
+                getFilesPerSecond(), getBytesPerSecond() / (1 << 20)));
+    }
+
+    @Override
+    public void close() {
+        if (progress != null) {
+            progress.shutdownNow();
+            printProgress();
+            progress = null;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException ignored) {
+            }
+        }
+        registered.clear();
+    }
+}
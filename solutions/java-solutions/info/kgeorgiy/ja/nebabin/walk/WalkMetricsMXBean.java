@@ -0,0 +1,20 @@
+package info.kgeorgiy.ja.nebabin.walk;
+
+/**
+ * Management view of {@link WalkMetrics}. Rates are averages since the start of the walk.
+ */
+public interface WalkMetricsMXBean {
+    long getFiles();
+
+    long getBytes();
+
+    long getErrors();
+
+    long getCacheHits();
+
+    long getElapsedMillis();
+
+    double getFilesPerSecond();
+
+    double getBytesPerSecond();
+}
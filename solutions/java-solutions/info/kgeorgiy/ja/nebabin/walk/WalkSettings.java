@@ -0,0 +1,215 @@
+package info.kgeorgiy.ja.nebabin.walk;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.Map;
+
+public class WalkSettings {
+    private int threads = 1;
+    private Path cacheFile = null;
+    private boolean forkJoin = false;
+    private boolean ordered = true;
+    private boolean duplicates = false;
+    private boolean watch = false;
+    private int prefetchFiles = 0;
+    private long prefetchBytes = 64 << 20;
+    private long progressMillis = 0;
+    private int virtualThreads = 0;
+    private boolean binary = false;
+    private boolean metadata = false;
+    private boolean jmx = false;
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public WalkSettings setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    public Path getCacheFile() {
+        return cacheFile;
+    }
+
+    public WalkSettings setCacheFile(Path cacheFile) {
+        this.cacheFile = cacheFile;
+        return this;
+    }
+
+    public boolean isForkJoin() {
+        return forkJoin;
+    }
+
+    public WalkSettings setForkJoin(boolean forkJoin) {
+        this.forkJoin = forkJoin;
+        return this;
+    }
+
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    public WalkSettings setOrdered(boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+
+    public boolean isDuplicates() {
+        return duplicates;
+    }
+
+    public WalkSettings setDuplicates(boolean duplicates) {
+        this.duplicates = duplicates;
+        return this;
+    }
+
+    public boolean isWatch() {
+        return watch;
+    }
+
+    public WalkSettings setWatch(boolean watch) {
+        this.watch = watch;
+        return this;
+    }
+
+    public int getPrefetchFiles() {
+        return prefetchFiles;
+    }
+
+    public WalkSettings setPrefetchFiles(int prefetchFiles) {
+        this.prefetchFiles = prefetchFiles;
+        return this;
+    }
+
+    public long getPrefetchBytes() {
+        return prefetchBytes;
+    }
+
+    public WalkSettings setPrefetchBytes(long prefetchBytes) {
+        this.prefetchBytes = prefetchBytes;
+        return this;
+    }
+
+    public long getProgressMillis() {
+        return progressMillis;
+    }
+
+    public WalkSettings setProgressMillis(long progressMillis) {
+        this.progressMillis = progressMillis;
+        return this;
+    }
+
+    public boolean isJmx() {
+        return jmx;
+    }
+
+    public WalkSettings setJmx(boolean jmx) {
+        this.jmx = jmx;
+        return this;
+    }
+
+    public int getVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public WalkSettings setVirtualThreads(int virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        return this;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    public WalkSettings setBinary(boolean binary) {
+        this.binary = binary;
+        return this;
+    }
+
+    public boolean isMetadata() {
+        return metadata;
+    }
+
+    public WalkSettings setMetadata(boolean metadata) {
+        this.metadata = metadata;
+        return this;
+    }
+
+    public static WalkSettings parse(Map<String, String> options) throws WalkModeException {
+        WalkSettings settings = new WalkSettings();
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            String value = option.getValue();
+            switch (option.getKey()) {
+                case "threads" -> settings.setThreads(parsePositive(value, "Amount of threads should be a positive integer."));
+                case "cache" -> settings.setCacheFile(parsePath(value, "Incorrect path of hash cache."));
+                case "traversal" -> settings.setForkJoin(parseChoice(value, "sequential", "forkjoin", "Traversal should be 'sequential' or 'forkjoin'."));
+                case "order" -> settings.setOrdered(!parseChoice(value, "input", "arrival", "Order should be 'input' or 'arrival'."));
+                case "duplicates" -> settings.setDuplicates(parseFlag(value, "Option 'duplicates' takes no value."));
+                case "watch" -> settings.setWatch(parseFlag(value, "Option 'watch' takes no value."));
+                case "prefetch" -> settings.setPrefetchFiles(parsePositive(value, "Amount of prefetched files should be a positive integer."));
+                case "prefetch-bytes" -> settings.setPrefetchBytes(parseLong(value, "Amount of prefetched bytes should be an integer."));
+                case "progress" -> settings.setProgressMillis(value.isEmpty() ? 1000
+                        : 1000 * parseLong(value, "Progress period should be an integer amount of seconds."));
+                case "virtual" -> settings.setVirtualThreads(value.isEmpty() ? 1024
+                        : parsePositive(value, "Amount of concurrent virtual threads should be a positive integer."));
+                case "format" -> settings.setBinary(parseChoice(value, "text", "binary", "Format should be 'text' or 'binary'."));
+                case "metadata" -> settings.setMetadata(parseFlag(value, "Option 'metadata' takes no value."));
+                case "jmx" -> settings.setJmx(parseFlag(value, "Option 'jmx' takes no value."));
+                default -> throw new WalkModeException("Unknown option '" + option.getKey() + "'.");
+            }
+        }
+        return settings;
+    }
+
+    private static int parseInt(String value, String message) throws WalkModeException {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new WalkModeException(message, e);
+        }
+    }
+
+    private static int parsePositive(String value, String message) throws WalkModeException {
+        int result = parseInt(value, message);
+        if (result < 1) {
+            throw new WalkModeException(message);
+        }
+        return result;
+    }
+
+    private static long parseLong(String value, String message) throws WalkModeException {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new WalkModeException(message, e);
+        }
+    }
+
+    private static boolean parseFlag(String value, String message) throws WalkModeException {
+        if (!value.isEmpty()) {
+            throw new WalkModeException(message);
+        }
+        return true;
+    }
+
+    private static boolean parseChoice(String value, String first, String second, String message) throws WalkModeException {
+        if (value.equals(first)) {
+            return false;
+        } else if (value.equals(second)) {
+            return true;
+        }
+        throw new WalkModeException(message);
+    }
+
+    private static Path parsePath(String value, String message) throws WalkModeException {
+        try {
+            if (value.isEmpty()) {
+                throw new WalkModeException(message);
+            }
+            return Path.of(value);
+        } catch (InvalidPathException e) {
+            throw new WalkModeException(message, e);
+        }
+    }
+}
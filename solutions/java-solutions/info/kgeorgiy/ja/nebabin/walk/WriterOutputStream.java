@@ -0,0 +1,62 @@
+package info.kgeorgiy.ja.nebabin.walk;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Output stream, which decodes UTF-8 text and writes it to a {@link Writer}.
+ * A character split between writes is kept until its last byte comes. The writer is not closed.
+ */
+class WriterOutputStream extends OutputStream {
+    private static final int BUFFER_SIZE = 1 << 13;
+
+    private final Writer writer;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+    WriterOutputStream(Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int cnt = Math.min(len, bytes.remaining());
+            bytes.put(b, off, cnt);
+            off += cnt;
+            len -= cnt;
+            decode();
+        }
+    }
+
+    private void decode() throws IOException {
+        bytes.flip();
+        CoderResult result;
+        do {
+            result = decoder.decode(bytes, chars, false);
+            writer.write(chars.array(), 0, chars.position());
+            chars.clear();
+        } while (result.isOverflow());
+        bytes.compact();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+}
@@ -0,0 +1,122 @@
+package info.kgeorgiy.ja.nebabin.walk;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming XXH64 with zero seed. Digest is written as big-endian hex, as {@code xxhsum} does.
+ */
+public class XxHashFileHasher extends AbstractFileHasher {
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME_3 = 0x165667B19E3779F9L;
+    private static final long PRIME_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME_5 = 0x27D4EB2F165667C5L;
+    private static final int STRIPE = 32;
+
+    private final ByteBuffer pending = ByteBuffer.allocate(STRIPE).order(ByteOrder.LITTLE_ENDIAN);
+    private long v1 = PRIME_1 + PRIME_2;
+    private long v2 = PRIME_2;
+    private long v3 = 0;
+    private long v4 = -PRIME_1;
+    private long total = 0;
+
+    public XxHashFileHasher(HashWriter output) {
+        super(output);
+    }
+
+    @Override
+    protected void update(ByteBuffer info) {
+        ByteBuffer data = info.slice().order(ByteOrder.LITTLE_ENDIAN);
+        int length = data.remaining();
+        total += length;
+        int i = 0;
+        if (pending.position() > 0) {
+            int cnt = Math.min(length, pending.remaining());
+            pending.put(data.slice(0, cnt));
+            i = cnt;
+            if (pending.hasRemaining()) {
+                info.position(info.limit());
+                return;
+            }
+            stripe(pending, 0);
+            pending.clear();
+        }
+        for (; i + STRIPE <= length; i += STRIPE) {
+            stripe(data, i);
+        }
+        pending.put(data.slice(i, length - i));
+        info.position(info.limit());
+    }
+
+    private void stripe(ByteBuffer data, int index) {
+        v1 = round(v1, data.getLong(index));
+        v2 = round(v2, data.getLong(index + 8));
+        v3 = round(v3, data.getLong(index + 16));
+        v4 = round(v4, data.getLong(index + 24));
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME_2;
+        return Long.rotateLeft(acc, 31) * PRIME_1;
+    }
+
+    private static long merge(long acc, long val) {
+        acc ^= round(0, val);
+        return acc * PRIME_1 + PRIME_4;
+    }
+
+    @Override
+    protected void reset() {
+        v1 = PRIME_1 + PRIME_2;
+        v2 = PRIME_2;
+        v3 = 0;
+        v4 = -PRIME_1;
+        total = 0;
+        pending.clear();
+    }
+
+    @Override
+    protected int digestLength() {
+        return Long.BYTES;
+    }
+
+    @Override
+    protected void digest(byte[] out, int offset) {
+        long hash;
+        if (total >= STRIPE) {
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = merge(hash, v1);
+            hash = merge(hash, v2);
+            hash = merge(hash, v3);
+            hash = merge(hash, v4);
+        } else {
+            hash = PRIME_5;
+        }
+        hash += total;
+        int length = pending.position();
+        int i = 0;
+        for (; i + Long.BYTES <= length; i += Long.BYTES) {
+            hash ^= round(0, pending.getLong(i));
+            hash = Long.rotateLeft(hash, 27) * PRIME_1 + PRIME_4;
+        }
+        if (i + Integer.BYTES <= length) {
+            hash ^= Integer.toUnsignedLong(pending.getInt(i)) * PRIME_1;
+            hash = Long.rotateLeft(hash, 23) * PRIME_2 + PRIME_3;
+            i += Integer.BYTES;
+        }
+        for (; i < length; ++i) {
+            hash ^= Byte.toUnsignedLong(pending.get(i)) * PRIME_5;
+            hash = Long.rotateLeft(hash, 11) * PRIME_1;
+        }
+        hash ^= hash >>> 33;
+        hash *= PRIME_2;
+        hash ^= hash >>> 29;
+        hash *= PRIME_3;
+        hash ^= hash >>> 32;
+        for (i = 0; i < Long.BYTES; ++i) {
+            out[offset + i] = (byte) (hash >>> (56 - 8 * i));
+        }
+        reset();
+    }
+}
@@ -5,6 +5,7 @@
  */
 module java.techs {
     requires java.compiler;
+    requires java.management;
     requires jsoup;
 
     exports info.kgeorgiy.ja.nebabin.walk;
@@ -19,4 +20,6 @@ module java.techs {
     exports info.kgeorgiy.ja.nebabin.implementor.shared;
     exports info.kgeorgiy.ja.nebabin.iterative.shared;
     exports info.kgeorgiy.ja.nebabin.student.shared;
+
+    uses info.kgeorgiy.ja.nebabin.walk.FileHasherProvider;
 }
\ No newline at end of file
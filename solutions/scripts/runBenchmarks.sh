@@ -0,0 +1,13 @@
+#!/bin/sh
+
+cd "$(dirname "${BASH_SOURCE[0]}")"/..
+COMP_DIR="benchOut"
+JMH_DIR="${JMH_DIR:-../java-advanced-2024/lib/jmh}"
+JMH_CLASS_PATH="$JMH_DIR/jmh-core.jar:$JMH_DIR/jopt-simple.jar:$JMH_DIR/commons-math3.jar"
+RESULT_DIR="${RESULT_DIR:-benchResults}"
+RESULT_FILE="$RESULT_DIR/$(git rev-parse --short HEAD 2>/dev/null || date +%Y%m%d-%H%M%S).json"
+mkdir -p $COMP_DIR $RESULT_DIR
+javac -cp "$JMH_CLASS_PATH" -processorpath "$JMH_DIR/jmh-generator-annprocess.jar:$JMH_CLASS_PATH" \
+    -d $COMP_DIR $(find java-solutions/info/kgeorgiy/ja/nebabin/walk java-benchmarks -name "*.java")
+java -cp "$COMP_DIR:$JMH_CLASS_PATH" org.openjdk.jmh.Main -rf json -rff "$RESULT_FILE" "$@"
+rm -r $COMP_DIR